@@ -0,0 +1,61 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * AppendBench measures small appends, the pattern of Test5's buf16/buf32 writes and of log files. Two files are
+ * grown side by side in 32-byte appends, then closed and read back in one read each. It prints the block reads,
+ * block writes and disk requests of the appends, and the seek distance of reading the first file back, which shows
+ * whether its blocks ended up contiguous. Compare -DthreadOS.fs.write=through (default) with
+ * -DthreadOS.fs.write=behind, together with -DthreadOS.fs.io=raw so every block access shows up on the disk.
+ * Usage: l AppendBench [appends per file]
+ */
+
+class AppendBench extends Thread {
+    private final static int DEFAULTAPPENDS = 256;
+    private final static int APPEND = 32; // bytes per append, Test5's buf32
+    private final int appends;
+
+    public AppendBench(String args[]) {
+        appends = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTAPPENDS;
+    }
+
+    public AppendBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.format(48);
+        byte[] append = new byte[APPEND];
+        int[] counts = new int[4];
+
+        SysLib.iostat(counts, true);
+        long start = System.currentTimeMillis();
+        int fd0 = SysLib.open("log0", "a");
+        int fd1 = SysLib.open("log1", "a");
+        for (int i = 0; i < appends; i++) {
+            append[0] = (byte) i;
+            SysLib.write(fd0, append);
+            SysLib.write(fd1, append);
+        }
+        SysLib.close(fd0);
+        SysLib.close(fd1);
+        long elapsed = System.currentTimeMillis() - start;
+        SysLib.iostat(counts, true);
+        SysLib.cout(2 * appends + " appends of " + APPEND + " bytes: " + counts[0] + " block reads, " + counts[1]
+            + " block writes, " + counts[3] + " requests, " + elapsed + " ms\n");
+
+        byte[] data = new byte[appends * APPEND];
+        SysLib.flush();
+        fd0 = SysLib.open("log0", "r");
+        SysLib.read(fd0, new byte[1]); // puts the head on the file's first block
+        SysLib.iostat(counts, true);
+        SysLib.read(fd0, data);
+        SysLib.iostat(counts, true);
+        SysLib.close(fd0);
+        SysLib.cout("reading log0 back: " + counts[0] + " block reads, " + counts[2] + " tracks of seek\n");
+        SysLib.exit();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * AsyncBench measures what an IoRing buys one thread doing random reads. It writes a file, then reads blocks of it at
+ * random offsets, first with plain seek and read calls, one at a time, and then through an IoRing keeping 1, 4, 8 and
+ * 16 reads in flight. The cache is emptied before each run. It prints reads per second, the seek distance and the
+ * elapsed time of each run. Try it in raw mode and with the ssd disk model, whose channels serve several reads at once.
+ * Usage: l AsyncBench [file blocks] [reads per run]
+ */
+
+import java.util.Random;
+
+class AsyncBench extends Thread {
+    private final static int[] DEPTHS = { 1, 4, 8, 16 };
+    private final static int DEFAULTBLOCKS = 256;
+    private final static int DEFAULTREADS = 96;
+    private final int blocks;
+    private final int reads;
+
+    public AsyncBench(String args[]) {
+        blocks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTBLOCKS;
+        reads = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULTREADS;
+    }
+
+    public AsyncBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.format(48);
+        int fd = SysLib.open("async", "w+");
+        SysLib.write(fd, new byte[blocks * 512]);
+        SysLib.close(fd);
+        SysLib.cout("disk model " + SysLib.diskmodel() + "\n");
+
+        fd = SysLib.open("async", "r");
+        byte[] block = new byte[512];
+        Random random = new Random(430);
+        startRun();
+        for (int i = 0; i < reads; i++) {
+            SysLib.seek(fd, random.nextInt(blocks) * 512, 0);
+            SysLib.read(fd, block);
+        }
+        report("sync read", reads);
+
+        for (int depth : DEPTHS) {
+            IoRing ring = new IoRing(depth);
+            byte[][] buffers = new byte[depth][512];
+            random = new Random(430);
+            startRun();
+            int issued = 0;
+            int done = 0;
+            while (done < reads) {
+                // keep depth reads in flight; the oldest one's buffer is free again by the time it is reused
+                for (int free = depth - ring.inFlight() - ring.ready(); free > 0 && issued < reads; free--) {
+                    ring.prepRead(fd, buffers[issued % depth], random.nextInt(blocks) * 512, issued % depth);
+                    issued++;
+                }
+                SysLib.iowait(ring, 1);
+                while (ring.reap() != null) {
+                    done++;
+                }
+            }
+            report("ring depth " + depth, reads);
+        }
+        SysLib.close(fd);
+        SysLib.exit();
+    }
+
+    private long startTime;
+
+    // Empties the cache and the counters, then starts the clock.
+    private void startRun() {
+        SysLib.flush();
+        SysLib.iostat(new int[4], true);
+        startTime = System.currentTimeMillis();
+    }
+
+    private void report(String run, int count) {
+        long elapsed = System.currentTimeMillis() - startTime;
+        int[] counts = new int[4];
+        SysLib.iostat(counts, false);
+        SysLib.cout(run + ": " + count * 1000L / Math.max(1, elapsed) + " reads/s, " + counts[2] + " tracks of seek, "
+            + elapsed + " ms\n");
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The AsyncIO class serves the operations programs submit through their IoRings. A fixed pool of kernel I/O threads
+ * takes submitted operations in order and runs each through the FileSystem exactly as the synchronous READ, WRITE
+ * and SYNC calls would, then posts the result to the operation's ring. While one operation waits on the disk the
+ * others are already queued there, so a single program can keep the disk as busy as many threads would, without
+ * spawning them. Operations on one open file still take turns on its file table entry.
+ */
+
+import java.util.LinkedList;
+
+class AsyncIO {
+    public final static int WORKERS = 8; // operations served at the same time
+
+    private final FileSystem fileSystem;
+    private final LinkedList<IoRing.Op> pending = new LinkedList<>();
+
+    AsyncIO(FileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+        for (int i = 0; i < WORKERS; i++) {
+            Thread worker = new Thread(this::serve);
+            worker.setDaemon(true); // never keeps ThreadOS from shutting down
+            worker.start();
+        }
+    }
+
+    // Queues operations whose open files the kernel has looked up; one with no open file fails at once.
+    void submit(IoRing.Op[] ops) {
+        synchronized(pending) {
+            for (IoRing.Op op : ops) {
+                if (op.ftEnt == null) {
+                    op.ring.complete(op, Kernel.ERROR);
+                } else {
+                    pending.addLast(op);
+                }
+            }
+            pending.notifyAll();
+        }
+    }
+
+    private IoRing.Op next() {
+        synchronized(pending) {
+            while (pending.isEmpty()) {
+                try {
+                    pending.wait();
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+            return pending.removeFirst();
+        }
+    }
+
+    private void serve() {
+        IoRing.Op op;
+        while ((op = next()) != null) {
+            op.ring.complete(op, perform(op));
+        }
+    }
+
+    private int perform(IoRing.Op op) {
+        switch (op.opcode) {
+            case IoRing.READ:
+                return fileSystem.read(op.ftEnt, op.buffer, op.offset);
+            case IoRing.WRITE:
+                return fileSystem.write(op.ftEnt, op.buffer, op.offset);
+            case IoRing.FSYNC:
+                fileSystem.fsync(op.ftEnt);
+                return BlockIO.sync();
+            default:
+                return Kernel.ERROR;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * A BlockDevice is what the kernel does its raw block I/O against: a single Disk, or a StripedDisk that spreads the
+ * blocks over several of them. Requests are queued and return a Disk.Request the caller then waits on, and each call
+ * returns null for a block id outside the device.
+ */
+
+interface BlockDevice {
+    // Returns the number of blocks the device holds.
+    int getDiskSize();
+
+    Disk.Request read(int blockId, byte[] buffer);
+
+    Disk.Request write(int blockId, byte[] buffer);
+
+    // Several blocks as one request; it is served when all of them are.
+    Disk.Request readv(int[] blockIds, byte[][] buffers);
+
+    Disk.Request writev(int[] blockIds, byte[][] buffers);
+
+    // Makes every block written so far durable in the device's image files.
+    Disk.Request sync();
+
+    void setScheduler(DiskScheduler scheduler);
+
+    DiskScheduler getScheduler();
+
+    // Only before start.
+    void setModel(DiskModel model);
+
+    DiskModel getModel();
+
+    // Tracks the heads have crossed, and bytes syncs wrote to the image files; reset clears the count.
+    long getSeekTracks(boolean reset);
+
+    long getSyncBytes(boolean reset);
+
+    // Starts serving requests.
+    void start();
+}
@@ -0,0 +1,249 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The BlockIO class is the single doorway the file system uses to reach the disk. Every data, inode, extent and
+ * superblock block goes through here, so one boot-time switch decides whether those blocks are
+ * served by the kernel's buffer cache (write-back, flushed on sync) or go straight to the raw disk every time.
+ * File system blocks may be larger than the disk's 512-byte blocks: the block size the disk was formatted with is
+ * set here, and every file system block number is turned into the run of disk blocks that holds it on the way down,
+ * so the cache and the disk keep working in disk blocks.
+ */
+
+import java.util.Arrays;
+
+class BlockIO {
+    public final static String CACHED = "cached";
+    public final static String RAW = "raw";
+
+    public final static int MAXBLOCKSIZE = 8192; // largest file system block size
+    private final static int MAXSTAGED = 256; // disk blocks a raw request stages in reused arrays; larger ones allocate
+
+    private static boolean cached = true; // true = go through the buffer cache
+    private static int blockSize = Disk.blockSize; // file system block size
+    private static int sectors = 1; // disk blocks per file system block
+
+    private final static ThreadLocal<BlockRange> ranges = ThreadLocal.withInitial(BlockRange::new);
+    private final static ThreadLocal<BlockRange> diskRanges = ThreadLocal.withInitial(BlockRange::new);
+    private final static ThreadLocal<Staging> stagings = ThreadLocal.withInitial(Staging::new);
+
+    // A thread's staging arrays for raw requests of file system blocks larger than a disk block. The disk wants
+    // arrays of exactly one entry per disk block, so there is an id and a frame array for each count staged so far;
+    // the frames all share the same disk-block buffers, as a thread stages one request at a time.
+    private static class Staging {
+        private int[][] ids = new int[1][];
+        private byte[][][] frames = new byte[1][][];
+        private byte[][] buffers = new byte[0][];
+        private final int[] oneBlock = new int[1]; // transfer's single block
+        private final byte[][] oneBuffer = new byte[1][];
+
+        // Returns this thread's id array for count disk blocks.
+        int[] ids(int count) {
+            if (count > MAXSTAGED) return new int[count];
+            if (count >= ids.length) ids = Arrays.copyOf(ids, count + 1);
+            if (ids[count] == null) ids[count] = new int[count];
+            return ids[count];
+        }
+
+        // Returns this thread's frame array for count disk blocks.
+        byte[][] frames(int count) {
+            if (count > MAXSTAGED) return new byte[count][Disk.blockSize];
+            if (count >= frames.length) frames = Arrays.copyOf(frames, count + 1);
+            if (frames[count] == null) {
+                if (count > buffers.length) {
+                    int had = buffers.length;
+                    buffers = Arrays.copyOf(buffers, count);
+                    for (int i = had; i < count; i++) buffers[i] = new byte[Disk.blockSize];
+                }
+                frames[count] = Arrays.copyOf(buffers, count);
+            }
+            return frames[count];
+        }
+    }
+
+    // Selects the block I/O mode; called once by the kernel at boot before the file system is mounted.
+    static void setMode(String mode) {
+        cached = !RAW.equals(mode);
+    }
+
+    // Returns the name of the active block I/O mode.
+    static String getMode() {
+        return cached ? CACHED : RAW;
+    }
+
+    // Returns true if size can be a file system block size: a power of two from the disk block size to MAXBLOCKSIZE.
+    static boolean isBlockSize(int size) {
+        return size >= Disk.blockSize && size <= MAXBLOCKSIZE && Integer.bitCount(size) == 1;
+    }
+
+    // Sets the file system block size; the superblock calls this when it mounts or formats the disk.
+    static void setBlockSize(int size) {
+        blockSize = size;
+        sectors = size / Disk.blockSize;
+    }
+
+    // Returns the file system block size in bytes.
+    static int blockSize() {
+        return blockSize;
+    }
+
+    // Reads one block into buffer, from the cache when cached mode is on.
+    static int read(int blockNumber, byte[] buffer) {
+        if (sectors > 1) return transfer(false, blockNumber, buffer);
+        return cached ? SysLib.cread(blockNumber, buffer) : SysLib.rawread(blockNumber, buffer);
+    }
+
+    // Writes one block from buffer; in cached mode the block stays dirty in the cache until the next sync.
+    static int write(int blockNumber, byte[] buffer) {
+        if (sectors > 1) return transfer(true, blockNumber, buffer);
+        return cached ? SysLib.cwrite(blockNumber, buffer) : SysLib.rawwrite(blockNumber, buffer);
+    }
+
+    // Reads blockNumbers.length blocks, buffers[i] receiving blockNumbers[i], as one disk request.
+    // In cached mode only the blocks the cache misses go to the disk, still together.
+    static int readv(int[] blockNumbers, byte[][] buffers) {
+        if (blockNumbers.length == 1) return read(blockNumbers[0], buffers[0]);
+        if (sectors > 1) {
+            return cached ? eachBlock(false, blockNumbers, buffers) : rawVector(false, blockNumbers, buffers);
+        }
+        return cached ? SysLib.creadv(blockNumbers, buffers) : SysLib.rawreadv(blockNumbers, buffers);
+    }
+
+    // Writes blockNumbers.length blocks as one disk request; in cached mode they just become dirty cache pages.
+    static int writev(int[] blockNumbers, byte[][] buffers) {
+        if (blockNumbers.length == 1 || cached) {
+            return eachBlock(true, blockNumbers, buffers);
+        }
+        return sectors > 1 ? rawVector(true, blockNumbers, buffers) : SysLib.rawwritev(blockNumbers, buffers);
+    }
+
+    private static int eachBlock(boolean write, int[] blockNumbers, byte[][] buffers) {
+        for (int i = 0; i < blockNumbers.length; i++) {
+            int result = write ? write(blockNumbers[i], buffers[i]) : read(blockNumbers[i], buffers[i]);
+            if (result != Kernel.OK) return Kernel.ERROR;
+        }
+        return Kernel.OK;
+    }
+
+    // Moves one file system block larger than a disk block: through the cache as a byte range over its disk blocks,
+    // or to and from the raw disk as one vectored request.
+    private static int transfer(boolean write, int blockNumber, byte[] buffer) {
+        if (!cached) {
+            Staging staging = stagings.get();
+            staging.oneBlock[0] = blockNumber;
+            staging.oneBuffer[0] = buffer;
+            int result = rawVector(write, staging.oneBlock, staging.oneBuffer);
+            staging.oneBuffer[0] = null; // Don't keep the caller's buffer reachable
+            return result;
+        }
+        BlockRange range = diskRanges.get();
+        range.clear(sectors);
+        for (int i = 0; i < sectors; i++) {
+            range.blocks[range.count++] = blockNumber * sectors + i;
+        }
+        range.offset = 0;
+        range.buffer = buffer;
+        range.bufferOffset = 0;
+        range.length = blockSize;
+        int result = write ? SysLib.cwriterange(range) : SysLib.creadrange(range);
+        range.buffer = null; // Don't keep the caller's buffer reachable
+        return result;
+    }
+
+    // Moves file system blocks to or from the raw disk as one request for all their disk blocks, staged in this
+    // thread's disk-block buffers.
+    private static int rawVector(boolean write, int[] blockNumbers, byte[][] buffers) {
+        Staging staging = stagings.get();
+        int count = blockNumbers.length * sectors;
+        int[] ids = staging.ids(count);
+        for (int i = 0; i < count; i++) {
+            ids[i] = blockNumbers[i / sectors] * sectors + i % sectors;
+        }
+        byte[][] staged = staging.frames(count);
+        if (write) {
+            for (int i = 0; i < ids.length; i++) {
+                System.arraycopy(buffers[i / sectors], (i % sectors) * Disk.blockSize, staged[i], 0, Disk.blockSize);
+            }
+            return SysLib.rawwritev(ids, staged);
+        }
+        int result = SysLib.rawreadv(ids, staged);
+        for (int i = 0; i < ids.length; i++) {
+            System.arraycopy(staged[i], 0, buffers[i / sectors], (i % sectors) * Disk.blockSize, Disk.blockSize);
+        }
+        return result;
+    }
+
+    // Returns the disk blocks holding the given file system blocks, in order.
+    private static int[] toDiskBlocks(int[] blockNumbers) {
+        int[] ids = new int[blockNumbers.length * sectors];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = blockNumbers[i / sectors] * sectors + i % sectors;
+        }
+        return ids;
+    }
+
+    // Returns range, given in file system blocks, as this thread's range over just the disk blocks it touches.
+    private static BlockRange toDiskRange(BlockRange range) {
+        int first = range.offset / Disk.blockSize; // disk blocks of blocks[0] the range skips
+        int last = (range.offset + range.length - 1) / Disk.blockSize;
+        BlockRange disk = diskRanges.get();
+        disk.clear(last - first + 1);
+        for (int i = first; i <= last; i++) {
+            disk.blocks[disk.count++] = range.blocks[i / sectors] * sectors + i % sectors;
+        }
+        disk.offset = range.offset % Disk.blockSize;
+        if (range.freshFrom != Integer.MAX_VALUE) {
+            disk.freshFrom = Math.max(0, range.freshFrom * sectors - first);
+        }
+        disk.buffer = range.buffer;
+        disk.bufferOffset = range.bufferOffset;
+        disk.length = range.length;
+        return disk;
+    }
+
+    // Returns this thread's BlockRange, emptied and with room for spanned blocks.
+    static BlockRange range(int spanned) {
+        BlockRange range = ranges.get();
+        range.clear(spanned);
+        return range;
+    }
+
+    // Copies a byte range between the cache and the caller's buffer; cached mode only.
+    static int readRange(BlockRange range) {
+        if (sectors == 1) return SysLib.creadrange(range);
+        if (range.length <= 0) return Kernel.OK;
+        BlockRange disk = toDiskRange(range);
+        int result = SysLib.creadrange(disk);
+        disk.buffer = null;
+        return result;
+    }
+
+    static int writeRange(BlockRange range) {
+        if (sectors == 1) return SysLib.cwriterange(range);
+        if (range.length <= 0) return Kernel.OK;
+        BlockRange disk = toDiskRange(range);
+        int result = SysLib.cwriterange(disk);
+        disk.buffer = null;
+        return result;
+    }
+
+    // Pulls blocks into the cache ahead of a sequential reader; there is nothing to read ahead into in raw mode.
+    static int prefetch(int[] blockNumbers) {
+        if (!cached) return 0;
+        return SysLib.cprefetch(sectors > 1 ? toDiskBlocks(blockNumbers) : blockNumbers);
+    }
+
+    // Returns true when blocks go through the buffer cache.
+    static boolean isCached() {
+        return cached;
+    }
+
+    // Pushes every block written so far out to the disk image.
+    // The kernel's SYNC writes back the cache's dirty blocks first, so this works in both modes.
+    static int sync() {
+        return SysLib.sync();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The BlockIndex class maps disk block numbers to cache pages, so the Cache finds a block in constant time instead of
+ * scanning every page. It is an open-addressing hash table over two int arrays, with no boxing and no per-entry
+ * objects: a key's home slot comes from a multiplicative hash, collisions probe the following slots, and removal
+ * shifts the rest of the probe run back into the hole instead of leaving tombstones, so lookups never slow down as
+ * blocks come and go. The table stays at most half full and doubles when it would not. Keys must not be negative.
+ * It is not thread safe; the Cache guards it.
+ */
+
+import java.util.Arrays;
+
+class BlockIndex {
+    private final static int EMPTY = -1; // key of an unused slot
+    private int[] keys;
+    private int[] values;
+    private int mask; // table length - 1; the length is a power of two
+    private int size;
+
+    // An index with room for capacity keys before it grows.
+    BlockIndex(int capacity) {
+        int length = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) * 2;
+        keys = new int[length];
+        values = new int[length];
+        Arrays.fill(keys, EMPTY);
+        mask = length - 1;
+    }
+
+    // Returns the value stored for key, or -1 if there is none.
+    int get(int key) {
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            if (keys[i] == key) return values[i];
+            if (keys[i] == EMPTY) return -1;
+        }
+    }
+
+    // Stores value for key, replacing the value it had.
+    void put(int key, int value) {
+        if ((size + 1) * 2 > keys.length) grow();
+        int i = slot(key);
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == EMPTY) size++;
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    // Removes key if it is there.
+    void remove(int key) {
+        int hole = slot(key);
+        while (keys[hole] != key) {
+            if (keys[hole] == EMPTY) return;
+            hole = (hole + 1) & mask;
+        }
+        // Move each later key of the probe run whose home is at or before the hole back into it
+        for (int i = (hole + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (((i - slot(keys[i])) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[keys.length];
+        Arrays.fill(keys, EMPTY);
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) put(oldKeys[i], oldValues[i]);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The BlockRange class describes one file read or write to the buffer cache as a byte range laid over a list of
+ * blocks, so the cache can copy between its frames and the caller's buffer directly. Each thread reuses a single
+ * BlockRange (see BlockIO.range), which keeps the steady-state read path from allocating anything.
+ */
+
+class BlockRange {
+    int[] blocks = new int[16]; // disk block numbers, in file order
+    int count; // # entries of blocks in use
+    int offset; // where the range starts within blocks[0]
+    int freshFrom; // blocks from this index on were just allocated and hold nothing yet
+    byte[] buffer; // the caller's buffer
+    int bufferOffset; // where the range starts within buffer
+    int length; // # bytes in the range
+
+    // Empties the range and makes room for at least spanned blocks.
+    void clear(int spanned) {
+        if (blocks.length < spanned) {
+            blocks = new int[Math.max(spanned, blocks.length * 2)];
+        }
+        count = 0;
+        freshFrom = Integer.MAX_VALUE;
+        buffer = null;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * BlockSizeBench measures sequential throughput at each file system block size. For 512, 1K, 2K, 4K and 8K blocks it
+ * formats the disk, writes one file front to back and pushes it to the disk, then empties the cache and reads the file
+ * back. It prints KB/s both ways and the disk requests and seek each direction took. Larger blocks mean fewer, larger
+ * requests and fewer extents, at the price of the space lost at the end of small files. The disk is formatted back to
+ * 512-byte blocks at the end. Run it with the hdd disk model to see seek and request costs, and zero to see just the
+ * file system's own overhead.
+ * Usage: l BlockSizeBench [file KB] [KB per read or write call]
+ */
+
+class BlockSizeBench extends Thread {
+    private final static int[] SIZES = { 512, 1024, 2048, 4096, 8192 };
+    private final static int DEFAULTKB = 192;
+    private final static int DEFAULTCHUNKKB = 8;
+    private final int fileBytes;
+    private final int chunkBytes;
+
+    public BlockSizeBench(String args[]) {
+        fileBytes = (args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTKB) * 1024;
+        chunkBytes = (args.length > 1 ? Integer.parseInt(args[1]) : DEFAULTCHUNKKB) * 1024;
+    }
+
+    public BlockSizeBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.cout("disk model " + SysLib.diskmodel() + ", " + fileBytes / 1024 + " KB file, " + chunkBytes / 1024
+            + " KB per call\n");
+        byte[] chunk = new byte[chunkBytes];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) i;
+        }
+        for (int size : SIZES) {
+            if (SysLib.format(48, size) != 0) {
+                SysLib.cerr("BlockSizeBench: cannot format with " + size + "-byte blocks\n");
+                continue;
+            }
+            SysLib.flush();
+            int fd = SysLib.open("seq", "w");
+            startRun();
+            int written = 0;
+            while (written < fileBytes) {
+                int n = SysLib.write(fd, chunk);
+                if (n <= 0) break;
+                written += n;
+            }
+            SysLib.close(fd);
+            SysLib.csync();
+            String write = report(written);
+
+            SysLib.flush();
+            fd = SysLib.open("seq", "r");
+            startRun();
+            int read = 0;
+            int n;
+            while ((n = SysLib.read(fd, chunk)) > 0) {
+                read += n;
+            }
+            SysLib.close(fd);
+            String readBack = report(read);
+            SysLib.cout(size + " B blocks: write " + write + "; read " + readBack + "\n");
+        }
+        SysLib.format(48, Disk.blockSize);
+        SysLib.exit();
+    }
+
+    private long startTime;
+
+    // Clears the counters, then starts the clock.
+    private void startRun() {
+        SysLib.iostat(new int[4], true);
+        startTime = System.currentTimeMillis();
+    }
+
+    private String report(int bytes) {
+        long elapsed = System.currentTimeMillis() - startTime;
+        int[] counts = new int[4];
+        SysLib.iostat(counts, false);
+        return bytes / 1024 * 1000L / Math.max(1, elapsed) + " KB/s, " + counts[3] + " requests, " + counts[2]
+            + " tracks";
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The BufferPool class hands out block-sized scratch buffers for the file system's raw-disk and metadata paths, so
+ * reading an inode or staging a block no longer allocates a fresh byte[512] each time. Every thread keeps its own
+ * small stack of buffers, which needs no locking. A taken buffer holds whatever it held last; zero it if that matters.
+ * Buffers left over from before the disk was formatted with another block size are dropped rather than reused.
+ */
+
+import java.util.ArrayDeque;
+
+class BufferPool {
+    private final static int MAXPOOLED = 16; // buffers kept per thread
+
+    private final static ThreadLocal<ArrayDeque<byte[]>> free =
+        ThreadLocal.withInitial(() -> new ArrayDeque<>(MAXPOOLED));
+
+    // Returns a block-sized buffer, reusing one given back earlier by this thread when there is one.
+    static byte[] take() {
+        ArrayDeque<byte[]> pool = free.get();
+        byte[] buffer = pool.pollFirst();
+        if (buffer != null && buffer.length != BlockIO.blockSize()) {
+            pool.clear(); // the block size changed
+            buffer = null;
+        }
+        return buffer != null ? buffer : new byte[BlockIO.blockSize()];
+    }
+
+    // Gives a buffer from take back to this thread's pool.
+    static void give(byte[] buffer) {
+        ArrayDeque<byte[]> pool = free.get();
+        if (pool.size() < MAXPOOLED && buffer.length == BlockIO.blockSize()) pool.addFirst(buffer);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * BulkWriteBench measures how many disk blocks a bulk load costs. It writes a file in Test5's buf[512 * 13] chunks,
+ * overwrites it in place block-aligned, and then overwrites it again starting mid-block, printing the raw block reads
+ * and writes of each phase and how many disk requests carried them. Boot with -DthreadOS.fs.io=raw so every file system block access shows up on the disk.
+ * Usage: l BulkWriteBench [chunks]
+ */
+
+class BulkWriteBench extends Thread {
+    private final static int DEFAULTCHUNKS = 4;
+    private final static int CHUNK = 512 * 13; // same chunk as Test5's big writes
+    private final int chunks;
+    private final byte[] chunk = new byte[CHUNK];
+
+    public BulkWriteBench(String args[]) {
+        chunks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTCHUNKS;
+        for (int i = 0; i < CHUNK; i++) chunk[i] = (byte) i;
+    }
+
+    public BulkWriteBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.format(48);
+        int fd = SysLib.open("bulk", "w+");
+        int blocks = chunks * CHUNK / 512;
+
+        SysLib.iostat(new int[2], true);
+        writeChunks(fd);
+        report("fresh write", blocks);
+
+        SysLib.seek(fd, 0, 0);
+        writeChunks(fd);
+        report("aligned overwrite", blocks);
+
+        SysLib.seek(fd, 100, 0); // every chunk now straddles block boundaries
+        writeChunks(fd);
+        report("unaligned overwrite", blocks);
+
+        SysLib.close(fd);
+        SysLib.exit();
+    }
+
+    private void writeChunks(int fd) {
+        for (int i = 0; i < chunks; i++) {
+            SysLib.write(fd, chunk);
+        }
+    }
+
+    // Prints and resets the disk block counters for one phase.
+    private void report(String phase, int blocks) {
+        int[] counts = new int[4];
+        SysLib.iostat(counts, true);
+        SysLib.cout(phase + ": " + blocks + " data blocks, " + counts[0] + " block reads, "
+            + counts[1] + " block writes, " + (counts[0] + counts[1]) + " disk I/Os in " + counts[3] + " requests\n");
+    }
+}
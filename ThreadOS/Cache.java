@@ -0,0 +1,803 @@
+import java.util.*;
+
+public class Cache {
+    // shards of fewer pages than this lose more hits to blocks spreading
+    // unevenly over them than they gain in concurrency
+    public static final int SHARDPAGES = 8;
+    public static final int MAXSHARDS = 16;
+
+    private int blockSize; // 512 bytes
+    private Shard[] shards; // block b is cached in shards[b % shards.length]
+    private volatile int pageCount; // changes with resize
+    private Flusher flusher; // writes dirty pages back ahead of eviction, if set
+
+    private class Entry {
+        public static final int INVALID = -1;
+        public boolean dirty;
+        public boolean prefetched; // read ahead and not used yet
+        public boolean admitted; // known to the replacement policy
+        public boolean busy; // on its way to or from disk; others wait
+        public int pins; // threads holding the frame; never a victim
+        public boolean cleaning; // a copy is on its way to disk (see clean)
+        public long dirtiedAt; // ms, when it last went from clean to dirty
+        public long lastUsed; // shard's access tick at its last use
+        public int frame;
+        public int evicted; // dirty block being written back, INVALID if none
+
+        public Entry( ) {
+            dirty = false;
+            cleaning = false;
+            prefetched = false;
+            admitted = false;
+            busy = false;
+            pins = 0;
+            frame = INVALID;
+            evicted = INVALID;
+        }
+    }
+
+    // a shard caches the blocks that map to it in pages of its own, under
+    // its own lock, so threads using blocks of different shards never wait
+    // for each other. no lock is held across disk I/O: a miss pins its
+    // frame and marks it busy, then reads (and writes back the dirty block
+    // it replaces) with the lock released. a thread wanting a busy frame's
+    // block, or the block being written back, waits for the I/O to finish,
+    // so a block is never loaded twice at once or read before its newer
+    // copy reaches the disk.
+    private class Shard {
+        private Vector<byte[]> pages; // This is actual pages that include data
+        private Entry[] pageTable = null;
+        private BlockIndex index; // block number -> page, for every valid page
+        private ReplacementPolicy policy; // picks the page a miss takes
+        private int filled; // pages from here on have never held a block
+        private int unread; // read-ahead pages not used yet
+        private int pinned; // pages with pins
+        private int dirty; // dirty pages
+        private int cleaning; // pages with a copy on its way to disk
+
+        // read-ahead counters
+        private int prefetchReads = 0; // blocks read ahead from disk
+        private int prefetchHits = 0;  // of those, later read by a thread
+        private int prefetchWaste = 0; // of those, evicted or overwritten unread
+
+        // hit ratio counters
+        private int accesses = 0; // blocks threads read or wrote
+        private int misses = 0;   // of those, not cached
+
+        // write-back counters
+        private int dirtyEvictions = 0; // victims that had to be written back
+        private int cleaned = 0;        // pages written back by clean
+
+        // sizing counters (see CacheSizer). a miss on one of the blocks
+        // evicted last, as many as the shard has pages, is a ghost hit: it
+        // would have hit with twice the pages. a hit on a page unused for
+        // 3/4 as many accesses as the shard has pages is a tail hit: it
+        // might have missed with a quarter fewer.
+        private long ticks = 0;     // accesses ever, the clock of lastUsed
+        private int sized = 0;      // accesses since the counters were read
+        private int ghostHits = 0;
+        private int tailHits = 0;
+        private int ghosts[];       // ring of recently evicted blocks
+        private int nextGhost;      // slot the next evicted block takes
+        private BlockIndex ghostIndex; // block number -> slot in ghosts
+
+        private Shard( int cacheBlocks, ReplacementPolicy policy ) {
+            pages = new Vector<byte[]>( );
+            for ( int i = 0; i < cacheBlocks; i++ ) {
+                byte[] p = new byte[blockSize];
+                pages.addElement( p );
+            }
+            pageTable = new Entry[ cacheBlocks ];
+            for ( int i = 0; i < cacheBlocks; i++ )
+                pageTable[i] = new Entry( );
+            index = new BlockIndex( cacheBlocks );
+            this.policy = policy;
+            policy.init( cacheBlocks );
+            forgetGhosts( );
+        }
+
+        private void forgetGhosts( ) {
+            ghosts = new int[ pageTable.length ];
+            Arrays.fill( ghosts, Entry.INVALID );
+            ghostIndex = new BlockIndex( pageTable.length );
+            nextGhost = 0;
+        }
+
+        // blockId was just evicted; it takes the oldest ghost's slot
+        private void remember( int blockId ) {
+            int old = ghosts[nextGhost];
+            if ( old != Entry.INVALID && ghostIndex.get( old ) == nextGhost )
+                ghostIndex.remove( old );
+            ghosts[nextGhost] = blockId;
+            ghostIndex.put( blockId, nextGhost );
+            nextGhost = ( nextGhost + 1 ) % ghosts.length;
+        }
+
+        // a thread's access to blockId missed
+        private void missed( int blockId ) {
+            misses++;
+            int slot = ghostIndex.get( blockId );
+            if ( slot != -1 ) {
+                ghostHits++;
+                ghostIndex.remove( blockId );
+                ghosts[slot] = Entry.INVALID;
+            }
+        }
+
+        // pages only become free all at once, in flush, so they fill up in order
+        private int findFreePage( ) {
+            return filled < pageTable.length ? filled++ : -1;
+        }
+
+        private void await( ) {
+            try {
+                wait( );
+            } catch ( InterruptedException e ) {
+                SysLib.cerr( e.toString( ) + "\n" );
+            }
+        }
+
+        // returns blockId's page once it is not busy, or -1 once a page
+        // can be claimed for it
+        private int lookup( int blockId ) {
+            while ( true ) {
+                int entry = index.get( blockId );
+                if ( entry == -1 ? pinned < pageTable.length
+                                 : !pageTable[entry].busy )
+                    return entry;
+                await( );
+            }
+        }
+
+        // gives a page to blockId, which is not cached, and returns it
+        // pinned and busy for the caller to fill. a read-ahead page that
+        // goes unread is waste. a dirty block stays findable, and others
+        // wait for it, until fill has written it back; so does a block
+        // clean is writing, which fill writes again once clean is done,
+        // so the disk cannot end up with clean's older copy.
+        private int claim( int blockId ) {
+            int victimEntry;
+            if ( ( victimEntry = findFreePage( ) ) == -1 )
+                victimEntry = policy.victim( blockId );
+            Entry e = pageTable[victimEntry];
+            if ( e.prefetched ) {
+                e.prefetched = false;
+                unread--;
+                prefetchWaste++;
+            }
+            if ( e.frame != Entry.INVALID ) {
+                if ( e.dirty ) {
+                    dirty--;
+                    dirtyEvictions++;
+                }
+                if ( e.dirty || e.cleaning )
+                    e.evicted = e.frame;
+                else
+                    index.remove( e.frame );
+                remember( e.frame );
+            }
+            e.frame = blockId;
+            e.lastUsed = ticks;
+            e.dirty = false;
+            e.admitted = false;
+            e.busy = true;
+            e.pins = 1;
+            pinned++;
+            index.put( blockId, victimEntry );
+            return victimEntry;
+        }
+
+        // claims a page for a block of a vectored load; returns -1 if the
+        // block is cached or on its way, or there is no page to spare
+        private synchronized int tryClaim( int blockId, boolean prefetch ) {
+            if ( index.get( blockId ) != -1 || pinned == pageTable.length )
+                return -1;
+            // unread read-ahead pages never take more than half the shard,
+            // so they cannot push out each other or hot blocks
+            if ( prefetch && unread >= pageTable.length / 2 )
+                return -1;
+            int entry = claim( blockId );
+            if ( prefetch ) {
+                pageTable[entry].prefetched = true;
+                unread++;
+                prefetchReads++;
+            } else {
+                missed( blockId );
+            }
+            return entry;
+        }
+
+        // writes back the block a claimed page replaces and, if read,
+        // reads the page's new block; runs without the lock, as the page
+        // is pinned and busy
+        private void fill( int entry, boolean read ) {
+            byte[] p = pages.elementAt( entry );
+            if ( pageTable[entry].evicted != Entry.INVALID ) {
+                awaitCleaned( entry );
+                SysLib.rawwrite( pageTable[entry].evicted, p );
+            }
+            if ( read )
+                SysLib.rawread( pageTable[entry].frame, p );
+        }
+
+        private synchronized void awaitCleaned( int entry ) {
+            while ( pageTable[entry].cleaning )
+                await( );
+        }
+
+        // the I/O fill or a vectored load did for entry is done
+        private void done( int entry ) {
+            Entry e = pageTable[entry];
+            if ( e.evicted != Entry.INVALID ) {
+                if ( index.get( e.evicted ) == entry )
+                    index.remove( e.evicted );
+                e.evicted = Entry.INVALID;
+            }
+            e.busy = false;
+            notifyAll( );
+        }
+
+        // drops a pin; the policy learns of a claimed page once the thread
+        // that claimed it is done with it
+        private void release( int entry ) {
+            Entry e = pageTable[entry];
+            if ( --e.pins > 0 )
+                return;
+            pinned--;
+            if ( !e.admitted ) {
+                e.admitted = true;
+                policy.admitted( entry, e.frame );
+            }
+            notifyAll( );
+        }
+
+        private synchronized void loaded( int entry ) {
+            done( entry );
+            release( entry );
+        }
+
+        private void useEntry( int entry, boolean read ) {
+            accesses++;
+            sized++;
+            ticks++;
+            if ( pageTable[entry].admitted ) {
+                policy.used( entry );
+                if ( ( ticks - pageTable[entry].lastUsed ) * 4 >
+                     pageTable.length * 3 )
+                    tailHits++;
+            }
+            pageTable[entry].lastUsed = ticks;
+            if ( pageTable[entry].prefetched ) {
+                pageTable[entry].prefetched = false;
+                unread--;
+                if ( read )
+                    prefetchHits++;
+                else
+                    prefetchWaste++;
+            }
+        }
+
+        // copies length bytes, offset bytes into blockId's frame, to
+        // buffer; a miss reads the block in first
+        private void read( int blockId, int offset, byte buffer[],
+                           int bufferOffset, int length ) {
+            int entry;
+            synchronized ( this ) {
+                entry = lookup( blockId );
+                if ( entry != -1 ) {
+                    System.arraycopy( pages.elementAt( entry ), offset,
+                                      buffer, bufferOffset, length );
+                    useEntry( entry, true );
+                    return;
+                }
+                missed( blockId );
+                entry = claim( blockId );
+            }
+            fill( entry, true );
+            synchronized ( this ) {
+                done( entry );
+                System.arraycopy( pages.elementAt( entry ), offset,
+                                  buffer, bufferOffset, length );
+                useEntry( entry, true );
+                release( entry );
+            }
+        }
+
+        // copies length bytes from buffer into blockId's frame, offset
+        // bytes in. a block only partly written is read first unless it is
+        // fresh, in which case it starts out zeroed instead.
+        private void write( int blockId, int offset, byte buffer[],
+                            int bufferOffset, int length, boolean fresh ) {
+            boolean partial = length < blockSize;
+            int entry;
+            synchronized ( this ) {
+                entry = lookup( blockId );
+                if ( entry != -1 ) {
+                    store( entry, offset, buffer, bufferOffset, length,
+                           partial && fresh );
+                    return;
+                }
+                missed( blockId );
+                entry = claim( blockId );
+            }
+            fill( entry, partial && !fresh );
+            synchronized ( this ) {
+                done( entry );
+                store( entry, offset, buffer, bufferOffset, length,
+                       partial && fresh );
+                release( entry );
+            }
+        }
+
+        private void store( int entry, int offset, byte buffer[],
+                            int bufferOffset, int length, boolean zero ) {
+            byte[] p = pages.elementAt( entry );
+            if ( zero )
+                Arrays.fill( p, (byte)0 );
+            System.arraycopy( buffer, bufferOffset, p, offset, length );
+            useEntry( entry, false );
+            if ( !pageTable[entry].dirty ) {
+                pageTable[entry].dirty = true;
+                pageTable[entry].dirtiedAt = System.currentTimeMillis( );
+                dirty++;
+                if ( flusher != null &&
+                     dirty * 100 >= pageTable.length * flusher.highRatio )
+                    flusher.wake( );
+            }
+        }
+
+        private void writeBack( int victimEntry ) {
+            if ( pageTable[victimEntry].frame != Entry.INVALID &&
+                 pageTable[victimEntry].dirty == true ) {
+                byte[] p = pages.elementAt( victimEntry );
+                SysLib.rawwrite( pageTable[victimEntry].frame, p );
+                pageTable[victimEntry].dirty = false;
+                dirty--;
+            }
+        }
+
+        // waits out every pin and every clean, so no write-back or load is
+        // in flight, then writes back the dirty pages with the lock held
+        private synchronized void writeBackAll( ) {
+            while ( pinned > 0 || cleaning > 0 )
+                await( );
+            for ( int i = 0; i < pageTable.length; i++ )
+                writeBack( i );
+        }
+
+        private synchronized void flush( ) {
+            writeBackAll( );
+            for ( int i = 0; i < pageTable.length; i++ ) {
+                if ( pageTable[i].prefetched ) {
+                    pageTable[i].prefetched = false;
+                    prefetchWaste++;
+                }
+                pageTable[i].admitted = false;
+                pageTable[i].frame = Entry.INVALID;
+            }
+            index.clear( );
+            policy.init( pageTable.length );
+            forgetGhosts( );
+            filled = 0;
+            unread = 0;
+        }
+
+        // gives the shard size pages. like flush, it waits out every pin
+        // and clean first. pages past the new end write back their dirty
+        // blocks and drop them; new pages are free. the policy starts over
+        // with the blocks still cached, least recently used first, and
+        // the ghosts are forgotten, as their window has changed.
+        private synchronized void resize( int size ) {
+            while ( pinned > 0 || cleaning > 0 )
+                await( );
+            for ( int i = size; i < pageTable.length; i++ ) {
+                writeBack( i );
+                if ( pageTable[i].prefetched ) {
+                    unread--;
+                    prefetchWaste++;
+                }
+                if ( pageTable[i].frame != Entry.INVALID )
+                    index.remove( pageTable[i].frame );
+            }
+            int old = pageTable.length;
+            pageTable = Arrays.copyOf( pageTable, size );
+            pages.setSize( size );
+            for ( int i = old; i < size; i++ ) {
+                pageTable[i] = new Entry( );
+                pages.setElementAt( new byte[blockSize], i );
+            }
+            filled = Math.min( filled, size );
+
+            Integer cached[] = new Integer[ filled ];
+            for ( int i = 0; i < filled; i++ )
+                cached[i] = i;
+            Arrays.sort( cached, ( a, b ) ->
+                         Long.compare( pageTable[a].lastUsed,
+                                       pageTable[b].lastUsed ) );
+            policy.init( size );
+            for ( int i = 0; i < filled; i++ )
+                policy.admitted( cached[i], pageTable[ cached[i] ].frame );
+            forgetGhosts( );
+            notifyAll( );
+        }
+
+        private synchronized void addPrefetchCounts( int counts[],
+                                                     boolean reset ) {
+            counts[0] += prefetchReads;
+            counts[1] += prefetchHits;
+            counts[2] += prefetchWaste;
+            if ( reset ) {
+                prefetchReads = 0;
+                prefetchHits = 0;
+                prefetchWaste = 0;
+            }
+        }
+
+        // picks the pages clean writes back: those dirty since before
+        // dirtiedBefore, then the longest dirty until no more than keep
+        // percent of the shard stays dirty. each gets a copy to write in
+        // copies[n...] and is marked cleaning; returns how many there are.
+        private synchronized int startCleaning( long dirtiedBefore, int keep,
+                                                int blockIds[],
+                                                byte copies[][],
+                                                Entry cleaned[], int n ) {
+            Integer candidates[] = new Integer[ dirty ];
+            int count = 0;
+            for ( int i = 0; i < pageTable.length && count < dirty; i++ ) {
+                if ( pageTable[i].dirty && !pageTable[i].cleaning )
+                    candidates[count++] = i;
+            }
+            Arrays.sort( candidates, 0, count, ( a, b ) ->
+                         Long.compare( pageTable[a].dirtiedAt,
+                                       pageTable[b].dirtiedAt ) );
+            int excess = dirty - pageTable.length * keep / 100;
+            int m = 0;
+            for ( ; m < count && n + m < blockIds.length; m++ ) {
+                Entry e = pageTable[ candidates[m] ];
+                if ( e.dirtiedAt >= dirtiedBefore && m >= excess )
+                    break;
+                blockIds[n + m] = e.frame;
+                copies[n + m] = pages.elementAt( candidates[m] ).clone( );
+                cleaned[n + m] = e;
+                e.dirty = false;
+                e.cleaning = true;
+            }
+            dirty -= m;
+            cleaning += m;
+            this.cleaned += m;
+            return m;
+        }
+
+        private synchronized void doneCleaning( Entry e ) {
+            e.cleaning = false;
+            cleaning--;
+            notifyAll( );
+        }
+
+        private synchronized void addWriteBackCounts( int counts[],
+                                                      boolean reset ) {
+            counts[0] += dirtyEvictions;
+            counts[1] += cleaned;
+            if ( reset ) {
+                dirtyEvictions = 0;
+                cleaned = 0;
+            }
+        }
+
+        private synchronized void addSizingCounts( int counts[] ) {
+            counts[0] += sized;
+            counts[1] += ghostHits;
+            counts[2] += tailHits;
+            sized = 0;
+            ghostHits = 0;
+            tailHits = 0;
+        }
+
+        private synchronized void addHitCounts( int counts[],
+                                                boolean reset ) {
+            counts[0] += accesses;
+            counts[1] += misses;
+            if ( reset ) {
+                accesses = 0;
+                misses = 0;
+            }
+        }
+    }
+
+    public Cache( int blockSize, int cacheBlocks ) {
+        this( blockSize, cacheBlocks,
+              ReplacementPolicy.forName( ReplacementPolicy.CLOCK ) );
+    }
+
+    public Cache( int blockSize, int cacheBlocks,
+                  ReplacementPolicy policy ) {
+        this( blockSize, cacheBlocks, policy, defaultShards( cacheBlocks ) );
+    }
+
+    // every shard gets a policy of its own, of the same kind as policy
+    public Cache( int blockSize, int cacheBlocks, ReplacementPolicy policy,
+                  int shardCount ) {
+        this.blockSize = blockSize;
+        pageCount = cacheBlocks;
+        shardCount = Math.max( 1, Math.min( shardCount, cacheBlocks ) );
+        shards = new Shard[ shardCount ];
+        for ( int i = 0; i < shardCount; i++ ) {
+            shards[i] = new Shard( shareOf( i, cacheBlocks ),
+                                   i == 0 ? policy :
+                                   ReplacementPolicy.forName(
+                                       policy.getName( ) ) );
+        }
+    }
+
+    // shard i's part of cacheBlocks pages
+    private int shareOf( int i, int cacheBlocks ) {
+        return cacheBlocks / shards.length +
+               ( i < cacheBlocks % shards.length ? 1 : 0 );
+    }
+
+    // one shard per SHARDPAGES pages, up to MAXSHARDS
+    public static int defaultShards( int cacheBlocks ) {
+        return Math.max( 1, Math.min( MAXSHARDS, cacheBlocks / SHARDPAGES ) );
+    }
+
+    private Shard shardOf( int blockId ) {
+        return shards[ blockId % shards.length ];
+    }
+
+    // reads up to max of the blocks that are not cached from disk as one
+    // vectored request, straight into the frames given to them, after
+    // writing back the dirty blocks those frames held as another. the
+    // frames stay pinned meanwhile, so none is given out twice in one
+    // call. returns the number of blocks read.
+    private int loadMissing( int blockIds[], int count, int max,
+                             boolean prefetch ) {
+        int ids[] = null;
+        int entries[] = null;
+        byte frames[][] = null;
+        int n = 0;
+        for ( int i = 0; i < count && n < max; i++ ) {
+            if ( blockIds[i] < 0 )
+                continue;
+            Shard s = shardOf( blockIds[i] );
+            int e = s.tryClaim( blockIds[i], prefetch );
+            if ( e == -1 )
+                continue;
+            if ( ids == null ) {
+                ids = new int[ Math.min( count, max ) ];
+                entries = new int[ ids.length ];
+                frames = new byte[ ids.length ][];
+            }
+            ids[n] = blockIds[i];
+            entries[n] = e;
+            frames[n++] = s.pages.elementAt( e );
+        }
+        if ( n == 0 )
+            return 0;
+
+        int evicted[] = new int[n];
+        byte dirty[][] = new byte[n][];
+        int m = 0;
+        for ( int i = 0; i < n; i++ ) {
+            Entry e = shardOf( ids[i] ).pageTable[ entries[i] ];
+            if ( e.evicted != Entry.INVALID ) {
+                shardOf( ids[i] ).awaitCleaned( entries[i] );
+                evicted[m] = e.evicted;
+                dirty[m++] = frames[i];
+            }
+        }
+        if ( m > 0 )
+            SysLib.rawwritev( Arrays.copyOf( evicted, m ),
+                              Arrays.copyOf( dirty, m ) );
+        if ( n == 1 )
+            SysLib.rawread( ids[0], frames[0] );
+        else
+            SysLib.rawreadv( Arrays.copyOf( ids, n ),
+                             Arrays.copyOf( frames, n ) );
+        for ( int i = 0; i < n; i++ )
+            shardOf( ids[i] ).loaded( entries[i] );
+        return n;
+    }
+
+    public boolean read( int blockId, byte buffer[] ) {
+        if ( blockId < 0 ) {
+            SysLib.cerr( "threadOS: a wrong blockId for cread\n" );
+            return false;
+        }
+        shardOf( blockId ).read( blockId, 0, buffer, 0, blockSize );
+        return true;
+    }
+
+    public boolean readv( int blockIds[], byte buffers[][] ) {
+        for ( int i = 0; i < blockIds.length; i++ ) {
+            if ( blockIds[i] < 0 ) {
+                SysLib.cerr( "threadOS: a wrong blockId for creadv\n" );
+                return false;
+            }
+        }
+
+        // all the misses go to disk together, then every block is copied
+        // out; a block pushed out again in between is simply read again
+        loadMissing( blockIds, blockIds.length, pageCount / 2, false );
+        for ( int i = 0; i < blockIds.length; i++ )
+            shardOf( blockIds[i] ).read( blockIds[i], 0, buffers[i], 0,
+                                         blockSize );
+        return true;
+    }
+
+    // copies range.length bytes, starting range.offset bytes into the first
+    // of range.blocks, straight from the frames into range.buffer
+    public boolean readRange( BlockRange range ) {
+        loadMissing( range.blocks, range.count, pageCount / 2, false );
+        int offset = range.offset;
+        int done = 0;
+        for ( int i = 0; i < range.count && done < range.length; i++ ) {
+            int n = Math.min( blockSize - offset, range.length - done );
+            shardOf( range.blocks[i] ).read( range.blocks[i], offset,
+                                             range.buffer,
+                                             range.bufferOffset + done, n );
+            done += n;
+            offset = 0;
+        }
+        return true;
+    }
+
+    public boolean write( int blockId, byte buffer[] ) {
+        if ( blockId < 0 ) {
+            SysLib.cerr( "threadOS: a wrong blockId for cwrite\n" );
+            return false;
+        }
+
+        // cache it but not write through.
+        shardOf( blockId ).write( blockId, 0, buffer, 0, blockSize, false );
+        return true;
+    }
+
+    // copies range.length bytes from range.buffer straight into the frames
+    // of range.blocks, starting range.offset bytes into the first. a block
+    // only partly written is read first unless it is one of the fresh ones
+    // (index >= range.freshFrom), which start out zeroed instead.
+    public boolean writeRange( BlockRange range ) {
+        int offset = range.offset;
+        int done = 0;
+        for ( int i = 0; i < range.count && done < range.length; i++ ) {
+            int n = Math.min( blockSize - offset, range.length - done );
+            shardOf( range.blocks[i] ).write( range.blocks[i], offset,
+                                              range.buffer,
+                                              range.bufferOffset + done, n,
+                                              i >= range.freshFrom );
+            done += n;
+            offset = 0;
+        }
+        return true;
+    }
+
+    // reads blocks ahead of a sequential reader into the cache, skipping
+    // those already cached. holding the cache keeps read-ahead out of a
+    // sync (see Kernel) and out of another read-ahead's way.
+    // returns the number of blocks read from disk.
+    public synchronized int prefetch( int blockIds[] ) {
+        return loadMissing( blockIds, blockIds.length, blockIds.length,
+                            true );
+    }
+
+    public int getPages( ) {
+        return pageCount;
+    }
+
+    public int getShards( ) {
+        return shards.length;
+    }
+
+    public String getPolicy( ) {
+        return shards[0].policy.getName( );
+    }
+
+    // gives the cache cacheBlocks pages, at least one per shard, and
+    // returns how many it has now. a shrinking shard writes back and drops
+    // the blocks of the pages it gives up. holding the cache keeps
+    // read-ahead, whose pages stay pinned across calls into the shards,
+    // out of the way.
+    public synchronized int resize( int cacheBlocks ) {
+        cacheBlocks = Math.max( shards.length, cacheBlocks );
+        for ( int i = 0; i < shards.length; i++ )
+            shards[i].resize( shareOf( i, cacheBlocks ) );
+        pageCount = cacheBlocks;
+        return pageCount;
+    }
+
+    // counts[0] = blocks threads read or wrote through the cache,
+    // counts[1] = ghost hits, counts[2] = tail hits (see Shard), all since
+    // the last call
+    public int[] getSizingCounts( ) {
+        int counts[] = new int[3];
+        for ( int i = 0; i < shards.length; i++ )
+            shards[i].addSizingCounts( counts );
+        return counts;
+    }
+
+    // counts[0] = blocks read ahead, counts[1] = read-ahead hits,
+    // counts[2] = read-ahead waste; reset = true clears them
+    public int[] getPrefetchCounts( boolean reset ) {
+        int counts[] = new int[3];
+        for ( int i = 0; i < shards.length; i++ )
+            shards[i].addPrefetchCounts( counts, reset );
+        return counts;
+    }
+
+    // counts[0] = dirty victims written back on eviction, counts[1] =
+    // dirty pages clean wrote back; reset = true clears them
+    public int[] getWriteBackCounts( boolean reset ) {
+        int counts[] = new int[2];
+        for ( int i = 0; i < shards.length; i++ )
+            shards[i].addWriteBackCounts( counts, reset );
+        return counts;
+    }
+
+    // counts[0] = blocks threads read or wrote through the cache,
+    // counts[1] = of those, misses; reset = true clears them
+    public int[] getHitCounts( boolean reset ) {
+        int counts[] = new int[2];
+        for ( int i = 0; i < shards.length; i++ )
+            shards[i].addHitCounts( counts, reset );
+        return counts;
+    }
+
+    // the flusher is woken whenever a shard has more than its high
+    // watermark of dirty pages
+    public void setFlusher( Flusher flusher ) {
+        this.flusher = flusher;
+    }
+
+    // writes back every page dirty since before dirtiedBefore (ms) and,
+    // longest dirty first, enough more that no more than keep percent of
+    // any shard stays dirty. the pages are copied under their shard's
+    // lock, then written in block order as one request with no lock held;
+    // a page written again meanwhile simply stays dirty. returns the
+    // number of pages written back.
+    public int clean( long dirtiedBefore, int keep ) {
+        int blockIds[] = new int[ pageCount ];
+        byte copies[][] = new byte[ pageCount ][];
+        Entry cleaned[] = new Entry[ pageCount ];
+        int n = 0;
+        for ( int i = 0; i < shards.length; i++ )
+            n += shards[i].startCleaning( dirtiedBefore, keep, blockIds,
+                                          copies, cleaned, n );
+        if ( n == 0 )
+            return 0;
+
+        Integer order[] = new Integer[n];
+        for ( int i = 0; i < n; i++ )
+            order[i] = i;
+        Arrays.sort( order, ( a, b ) ->
+                     Integer.compare( blockIds[a], blockIds[b] ) );
+        int ids[] = new int[n];
+        byte frames[][] = new byte[n][];
+        for ( int i = 0; i < n; i++ ) {
+            ids[i] = blockIds[ order[i] ];
+            frames[i] = copies[ order[i] ];
+        }
+        SysLib.rawwritev( ids, frames );
+        for ( int i = 0; i < n; i++ )
+            shardOf( blockIds[i] ).doneCleaning( cleaned[i] );
+        return n;
+    }
+
+    // write back all dirty pages without syncing the disk image.
+    // called by the kernel before every disk sync so that a SYNC also
+    // persists the blocks the file system left dirty in this cache.
+    public void writeBackAll( ) {
+        for ( int i = 0; i < shards.length; i++ )
+            shards[i].writeBackAll( );
+    }
+
+    public void sync( ) {
+        writeBackAll( );
+        SysLib.sync( );
+    }
+
+    public void flush( ) {
+        for ( int i = 0; i < shards.length; i++ )
+            shards[i].flush( );
+        SysLib.sync( );
+    }
+}
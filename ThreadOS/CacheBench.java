@@ -0,0 +1,58 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * CacheBench measures how long Cache.read takes to serve a hit as the cache grows. For 10, 1K and 64K pages it builds
+ * a cache of its own (not the kernel's), fills every page with cwrite-style writes, which touch no disk, then times
+ * reads of blocks picked at random among those cached, after an untimed warm-up round so the JIT has compiled the
+ * path. It prints the average nanoseconds per hit; with the block index the figure should stay flat as the cache
+ * grows. The filled pages are dirty but never written back, so the DISK is left alone.
+ * Usage: l CacheBench [reads per size]
+ */
+
+import java.util.Random;
+
+class CacheBench extends Thread {
+    private final static int[] SIZES = { 10, 1024, 65536 };
+    private final static int DEFAULTREADS = 2000000;
+    private final int reads;
+
+    public CacheBench(String args[]) {
+        reads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTREADS;
+    }
+
+    public CacheBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        byte[] block = new byte[Disk.blockSize];
+        for (int pages : SIZES) {
+            Cache cache = new Cache(Disk.blockSize, pages);
+            for (int b = 0; b < pages; b++) {
+                cache.write(b, block);
+            }
+            int[] blockIds = new int[4096];
+            Random random = new Random(430);
+            for (int i = 0; i < blockIds.length; i++) {
+                blockIds[i] = random.nextInt(pages);
+            }
+
+            readHits(cache, blockIds, block, reads); // warm-up
+            long start = System.nanoTime();
+            readHits(cache, blockIds, block, reads);
+            long elapsed = System.nanoTime() - start;
+            SysLib.cout(pages + " pages: " + elapsed / reads + " ns per hit\n");
+        }
+        SysLib.exit();
+    }
+
+    private static void readHits(Cache cache, int[] blockIds, byte[] block, int reads) {
+        for (int i = 0; i < reads; i++) {
+            cache.read(blockIds[i & (blockIds.length - 1)], block);
+        }
+    }
+}
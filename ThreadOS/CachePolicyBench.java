@@ -0,0 +1,89 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * CachePolicyBench compares the cache replacement policies. For every policy it builds a cache of its own (not the
+ * kernel's) and replays four block reference strings through it:
+ *   random    - blocks picked uniformly among 500, far more than the cache holds.
+ *   localized - nearly every access goes to a working set a little smaller than the cache.
+ *   mixed     - 90% of accesses go to that working set, the rest anywhere among 1000 blocks.
+ *   adversary - the working set, interleaved with sequential scans of twice the cache over blocks it does not use,
+ *               the pattern that flushes a plain LRU cache.
+ * The strings are the same for every policy. Each run reads through the cache, so misses go to the disk, and prints
+ * the hit ratio and the elapsed time; nothing is written, so the DISK is left alone. Boot with
+ * -DthreadOS.disk.model=zero to time the policies alone, or keep the hdd model to see what the misses cost.
+ * Usage: l CachePolicyBench [cache pages] [accesses per run]
+ */
+
+import java.util.Random;
+
+class CachePolicyBench extends Thread {
+    private final static String[] WORKLOADS = { "random", "localized", "mixed", "adversary" };
+    private final static int DEFAULTPAGES = 64;
+    private final static int DEFAULTACCESSES = 2000;
+    private final int pages;
+    private final int accesses;
+
+    public CachePolicyBench(String args[]) {
+        pages = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTPAGES;
+        accesses = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULTACCESSES;
+    }
+
+    public CachePolicyBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.cout("disk model " + SysLib.diskmodel() + ", " + pages + " pages, " + accesses + " accesses per run\n");
+        byte[] block = new byte[Disk.blockSize];
+        for (String workload : WORKLOADS) {
+            int[] blockIds = references(workload);
+            SysLib.cout(workload + ":\n");
+            for (String name : ReplacementPolicy.NAMES) {
+                Cache cache = new Cache(Disk.blockSize, pages, ReplacementPolicy.forName(name));
+                long start = System.currentTimeMillis();
+                for (int blockId : blockIds) {
+                    cache.read(blockId, block);
+                }
+                long elapsed = System.currentTimeMillis() - start;
+                int[] counts = cache.getHitCounts(false);
+                int hits = counts[0] - counts[1];
+                SysLib.cout("  " + name + ": " + hits * 100 / counts[0] + "." + hits * 1000 / counts[0] % 10
+                            + "% hits, " + elapsed + " ms\n");
+            }
+        }
+        SysLib.exit();
+    }
+
+    // Returns the reference string of workload; the same seed every time, so every policy sees the same one.
+    private int[] references(String workload) {
+        Random random = new Random(430);
+        int hotSet = pages * 3 / 4;
+        int[] blockIds = new int[accesses];
+        int scanned = 0; // scans cycle through blocks 500 to 999, too many for one to be cached when it comes back
+        for (int i = 0; i < accesses; i++) {
+            switch (workload) {
+                case "random":
+                    blockIds[i] = random.nextInt(500);
+                    break;
+                case "localized":
+                    blockIds[i] = random.nextInt(50) == 0 ? hotSet + random.nextInt(pages) : random.nextInt(hotSet);
+                    break;
+                case "mixed":
+                    blockIds[i] = random.nextInt(10) == 0 ? random.nextInt(1000) : random.nextInt(hotSet);
+                    break;
+                default: // a scan of twice the cache after every 4 passes' worth of working set accesses
+                    if (i % (pages * 2 + hotSet * 4) < hotSet * 4) {
+                        blockIds[i] = random.nextInt(hotSet);
+                    } else {
+                        blockIds[i] = 500 + scanned++ % 500;
+                    }
+                    break;
+            }
+        }
+        return blockIds;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * CacheShardBench measures whether threads hitting in the Cache get held up by another thread's misses. It builds
+ * caches of its own (not the kernel's) of 256 pages, with one shard and with the default number. For each, one thread
+ * reads blocks no one else uses, which all miss, while the others read a hot set of blocks, which stay cached, until
+ * the missing thread is done. It prints how long the misses took and how many hits per second the other threads got
+ * meanwhile. With the lock held across a miss, every hit waits out the disk; with it released, hits keep being
+ * served from memory. Nothing is written, so the DISK is left alone.
+ * Usage: l CacheShardBench [hitting threads] [misses]
+ */
+
+class CacheShardBench extends Thread {
+    private final static int PAGES = 256;
+    private final static int HOTSET = 128;
+    private final static int DEFAULTTHREADS = 4;
+    private final static int DEFAULTMISSES = 100;
+    private final int threads;
+    private final int misses;
+    private volatile boolean missing;
+
+    public CacheShardBench(String args[]) {
+        threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTTHREADS;
+        misses = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULTMISSES;
+    }
+
+    public CacheShardBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.cout("disk model " + SysLib.diskmodel() + ", " + threads + " hitting threads, " + misses + " misses\n");
+        for (int shards : new int[] { 1, Cache.defaultShards(PAGES) }) {
+            final Cache cache = new Cache(Disk.blockSize, PAGES,
+                                          ReplacementPolicy.forName(ReplacementPolicy.CLOCK), shards);
+            byte[] block = new byte[Disk.blockSize];
+            for (int b = 0; b < HOTSET; b++) {
+                cache.read(b, block);
+            }
+            final long[] hits = new long[threads];
+            Thread[] hitters = new Thread[threads];
+            missing = true;
+            for (int t = 0; t < threads; t++) {
+                final int id = t;
+                hitters[t] = new Thread(() -> {
+                    byte[] buffer = new byte[Disk.blockSize];
+                    for (int b = id; missing; b = (b + 7) % HOTSET) {
+                        cache.read(b, buffer);
+                        hits[id]++;
+                    }
+                });
+            }
+            long start = System.currentTimeMillis();
+            for (Thread hitter : hitters) {
+                hitter.start();
+            }
+            for (int i = 0; i < misses; i++) {
+                cache.read(HOTSET + i % (1000 - HOTSET), block);
+            }
+            long elapsed = Math.max(1, System.currentTimeMillis() - start);
+            missing = false;
+            long total = 0;
+            for (int t = 0; t < threads; t++) {
+                try {
+                    hitters[t].join();
+                } catch (InterruptedException e) {
+                    SysLib.cerr(e.toString() + "\n");
+                }
+                total += hits[t];
+            }
+            SysLib.cout(shards + " shards: misses took " + elapsed + " ms, " + total * 1000 / elapsed
+                        + " hits/s meanwhile\n");
+        }
+        SysLib.exit();
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * CacheSize prints the number of cache pages and, given a number, resizes the cache to that many first. Dirty blocks
+ * of the pages a smaller cache gives up are written back. The size at boot comes from threadOS.cache.pages.
+ * Usage: l CacheSize [pages]
+ */
+
+class CacheSize extends Thread {
+    private final int pages;
+
+    public CacheSize(String args[]) {
+        pages = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+    }
+
+    public CacheSize() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.cout("cache of " + SysLib.cachesize(pages) + " pages\n");
+        SysLib.exit();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * CacheSizeBench shows an adaptive cache following its working set. It reads blocks at random from a 120-block file,
+ * first from a working set of 60 of them, then from just 6, for the given number of seconds each, and every second
+ * prints the size of the kernel's cache and the hit ratio over that second. Boot with -DthreadOS.cache.adaptive=on
+ * (and -DthreadOS.disk.model=zero to get more accesses per second) to watch the cache grow until the large working
+ * set fits, then shrink once the small one is all that is used; without it, the cache keeps its boot size.
+ * Usage: l CacheSizeBench [seconds per phase]
+ */
+
+import java.util.Random;
+
+class CacheSizeBench extends Thread {
+    private final static int DEFAULTSECONDS = 8;
+    private final static int FILEBLOCKS = 120;
+    private final static int[] WORKINGSETS = { 60, 6 };
+    private final int seconds;
+
+    public CacheSizeBench(String args[]) {
+        seconds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTSECONDS;
+    }
+
+    public CacheSizeBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.format(48);
+        int blockSize = Disk.blockSize;
+        byte[] block = new byte[blockSize];
+        int fd = SysLib.open("sized", "w");
+        for (int b = 0; b < FILEBLOCKS; b++) {
+            SysLib.write(fd, block);
+        }
+        SysLib.close(fd);
+        SysLib.csync();
+        SysLib.cout("disk model " + SysLib.diskmodel() + ", cache of " + SysLib.cachesize(0) + " pages\n");
+
+        fd = SysLib.open("sized", "r");
+        Random random = new Random(430);
+        int[] counts = new int[10];
+        for (int workingSet : WORKINGSETS) {
+            SysLib.cout("working set of " + workingSet + " blocks:\n");
+            for (int s = 0; s < seconds; s++) {
+                SysLib.iostat(counts, true);
+                long end = System.currentTimeMillis() + 1000;
+                while (System.currentTimeMillis() < end) {
+                    SysLib.seek(fd, random.nextInt(workingSet) * blockSize, 0);
+                    SysLib.read(fd, block);
+                }
+                SysLib.iostat(counts, false);
+                int hits = counts[8] - counts[9];
+                SysLib.cout("  " + SysLib.cachesize(0) + " pages, " + hits * 100 / Math.max(1, counts[8])
+                            + "% hits of " + counts[8] + " accesses\n");
+            }
+        }
+        SysLib.close(fd);
+        SysLib.exit();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The CacheSizer class is a background thread that grows and shrinks the cache to fit the blocks in use, between
+ * minPages and maxPages, the memory budget. Every INTERVAL ms it reads the cache's sizing counters (see Cache):
+ *   ghost hits - misses on blocks evicted recently enough that twice the pages would have kept them.
+ *   tail hits  - hits on pages left unused long enough that a quarter fewer pages might have lost them.
+ * If at least GROWPERCENT % of the accesses were ghost hits, more pages would turn misses into hits, so the cache
+ * grows by half. If fewer than SHRINKPERCENT % were tail hits, its last quarter serves almost nothing, so it shrinks
+ * by a quarter. An interval with fewer accesses than the cache has pages says too little and changes nothing, so an
+ * idle cache keeps its size. Each resize is logged.
+ */
+
+class CacheSizer extends Thread {
+    public final static long INTERVAL = 1000; // ms between looks at the counters
+    public final static int GROWPERCENT = 5; // % of accesses ghost hits that grow the cache
+    public final static int SHRINKPERCENT = 1; // % of accesses tail hits below which the cache shrinks
+    public final static int DEFAULTBUDGET = 256; // KB the cache may grow to
+    public final static int MINPAGES = 8; // pages the cache keeps however little is used
+
+    final int minPages;
+    final int maxPages;
+    private final Cache cache;
+
+    CacheSizer(Cache cache, int minPages, int maxPages) {
+        this.cache = cache;
+        this.minPages = Math.max(1, minPages);
+        this.maxPages = Math.max(this.minPages, maxPages);
+        setDaemon(true); // never keeps ThreadOS from shutting down
+    }
+
+    // Returns the size the cache should have after an interval with these sizing counts, or pages to keep it.
+    int decide(int pages, int[] counts) {
+        int accesses = counts[0];
+        if (accesses < pages) return pages;
+        if (counts[1] * 100 >= accesses * GROWPERCENT) return Math.min(maxPages, pages + Math.max(1, pages / 2));
+        if (counts[2] * 100 < accesses * SHRINKPERCENT) return Math.max(minPages, pages - pages / 4);
+        return pages;
+    }
+
+    public void run() {
+        while (true) {
+            try {
+                Thread.sleep(INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+            int pages = cache.getPages();
+            int size = decide(pages, cache.getSizingCounts());
+            if (size != pages) {
+                size = cache.resize(size);
+                SysLib.cerr("threadOS: cache resized from " + pages + " to " + size + " pages\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The ChunkMap class records where a compressed file's data lives. A compressed file is cut into CHUNKSIZE-byte
+ * chunks, each compressed on its own (see Lz4) and packed one after another into the file's blocks, so a read only
+ * decompresses the chunks it covers. The map fills the file's first block: the byte offset, counted over the file's
+ * blocks, just past the last chunk, followed by each chunk's offset and stored length. A chunk stored at its
+ * full length did not compress and is kept as it is. A rewritten chunk whose stored length changed goes into the
+ * first gap between the others that holds it (see place), so the space chunks leave behind is used again. The inode
+ * holds the map once it has been read, along with the last chunk decompressed, since small sequential reads and
+ * appends keep coming back to the same chunk.
+ */
+
+import java.util.Arrays;
+
+class ChunkMap {
+    public final static int CHUNKSIZE = 4096; // file bytes per chunk
+    private final static int ENTRYSIZE = 6; // int offset, short stored length
+
+    int tail; // first byte after the last chunk
+    private final int start; // where the first chunk may go: right after the map block
+    private final int[] offsets;
+    private final short[] lengths;
+    int cachedChunk = -1; // chunk held decompressed in cached
+    final byte[] cached = new byte[CHUNKSIZE];
+
+    // An empty map; chunks start right after the block holding the map.
+    ChunkMap(int blockSize) {
+        offsets = new int[capacity(blockSize)];
+        lengths = new short[offsets.length];
+        start = blockSize;
+        tail = blockSize;
+    }
+
+    // Decodes the map block of a file with chunks chunks.
+    ChunkMap(byte[] block, int chunks) {
+        this(block.length);
+        tail = SysLib.bytes2int(block, 0);
+        for (int c = 0; c < chunks && c < offsets.length; c++) {
+            offsets[c] = SysLib.bytes2int(block, 4 + c * ENTRYSIZE);
+            lengths[c] = SysLib.bytes2short(block, 8 + c * ENTRYSIZE);
+        }
+    }
+
+    // Returns the number of chunks a map block of blockSize bytes can hold.
+    static int capacity(int blockSize) {
+        return (blockSize - 4) / ENTRYSIZE;
+    }
+
+    // Returns the largest file a map block of blockSize bytes can describe.
+    static int maxFileSize(int blockSize) {
+        return capacity(blockSize) * CHUNKSIZE;
+    }
+
+    int offset(int chunk) {
+        return offsets[chunk];
+    }
+
+    int length(int chunk) {
+        return lengths[chunk];
+    }
+
+    void set(int chunk, int offset, int length) {
+        offsets[chunk] = offset;
+        lengths[chunk] = (short) length;
+        tail = start;
+        for (int c = 0; c < offsets.length; c++) {
+            if (lengths[c] > 0) tail = Math.max(tail, offsets[c] + lengths[c]);
+        }
+    }
+
+    // Returns where chunk should be stored now that it is length bytes long: the first gap between the other chunks
+    // that holds it, the chunk's own place counting as free, or else right after the last of them. So a file's
+    // chunks never take more space than they did at their largest plus what gaps too small to use add up to.
+    int place(int chunk, int length) {
+        long[] others = new long[offsets.length]; // offset << 32 | chunk, to sort the chunks by where they lie
+        int count = 0;
+        for (int c = 0; c < offsets.length; c++) {
+            if (c != chunk && lengths[c] > 0) others[count++] = (long) offsets[c] << 32 | c;
+        }
+        Arrays.sort(others, 0, count);
+        int gap = start;
+        for (int i = 0; i < count; i++) {
+            int c = (int) others[i];
+            if (offsets[c] - gap >= length) return gap;
+            gap = Math.max(gap, offsets[c] + lengths[c]);
+        }
+        return gap;
+    }
+
+    // Encodes the map into block, which is one block long.
+    void toBytes(byte[] block) {
+        SysLib.int2bytes(tail, block, 0);
+        for (int c = 0; c < offsets.length; c++) {
+            SysLib.int2bytes(offsets[c], block, 4 + c * ENTRYSIZE);
+            SysLib.short2bytes(lengths[c], block, 8 + c * ENTRYSIZE);
+        }
+    }
+}
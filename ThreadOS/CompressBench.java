@@ -0,0 +1,97 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * CompressBench measures what compression saves on a file of log lines. It writes the same log once as a plain file
+ * and once as a compressed file, pushing each to the disk, then empties the cache and reads each back front to back,
+ * and finally reads short records at random offsets. For every run it prints the disk blocks moved and the elapsed
+ * time; with the hdd disk model, fewer blocks means proportionally less time.
+ * Usage: l CompressBench [file KB] [random reads]
+ */
+
+import java.util.Random;
+
+class CompressBench extends Thread {
+    private final static int DEFAULTKB = 96;
+    private final static int DEFAULTREADS = 32;
+    private final static int CALLBYTES = 4096; // bytes per read or write call
+    private final int fileBytes;
+    private final int reads;
+
+    public CompressBench(String args[]) {
+        fileBytes = (args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTKB) * 1024;
+        reads = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULTREADS;
+    }
+
+    public CompressBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.format(48);
+        SysLib.cout("disk model " + SysLib.diskmodel() + ", " + fileBytes / 1024 + " KB of log lines\n");
+        byte[] log = new byte[fileBytes];
+        Random random = new Random(430);
+        StringBuilder lines = new StringBuilder();
+        for (int line = 0; lines.length() < fileBytes; line++) {
+            lines.append("2026-10-17 12:").append(10 + line / 600 % 50).append(':').append(10 + line / 10 % 50)
+                .append(" INFO worker-").append(random.nextInt(8)).append(" request ").append(random.nextInt(100000))
+                .append(" served in ").append(random.nextInt(200)).append(" ms\n");
+        }
+        System.arraycopy(lines.toString().getBytes(), 0, log, 0, fileBytes);
+
+        for (boolean compressed : new boolean[] { false, true }) {
+            String name = compressed ? "compressed" : "plain";
+            int fd = SysLib.open(name, "w");
+            if (compressed) SysLib.compress(fd);
+            startRun();
+            for (int offset = 0; offset < fileBytes; offset += CALLBYTES) {
+                byte[] call = new byte[Math.min(CALLBYTES, fileBytes - offset)];
+                System.arraycopy(log, offset, call, 0, call.length);
+                SysLib.write(fd, call);
+            }
+            SysLib.close(fd);
+            SysLib.csync();
+            report(name + " write");
+
+            fd = SysLib.open(name, "r");
+            byte[] call = new byte[CALLBYTES];
+            startRun();
+            int total = 0;
+            for (int n; (n = SysLib.read(fd, call)) > 0; ) {
+                total += n;
+            }
+            report(name + " sequential read of " + total / 1024 + " KB");
+
+            byte[] record = new byte[64];
+            random = new Random(430);
+            startRun();
+            for (int i = 0; i < reads; i++) {
+                SysLib.seek(fd, random.nextInt(fileBytes - record.length), 0);
+                SysLib.read(fd, record);
+            }
+            report(name + " random read");
+            SysLib.close(fd);
+        }
+        SysLib.exit();
+    }
+
+    private long startTime;
+
+    // Empties the cache and the counters, then starts the clock.
+    private void startRun() {
+        SysLib.flush();
+        SysLib.iostat(new int[2], true);
+        startTime = System.currentTimeMillis();
+    }
+
+    private void report(String run) {
+        long elapsed = System.currentTimeMillis() - startTime;
+        int[] counts = new int[2];
+        SysLib.iostat(counts, false);
+        SysLib.cout(run + ": " + counts[0] + " blocks read, " + counts[1] + " blocks written, " + elapsed + " ms\n");
+    }
+}
@@ -0,0 +1,319 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class Disk extends Thread implements BlockDevice {
+    public static final int blockSize = 512;
+    static final int trackSize = 10; // blocks per track
+    private int diskSize;
+    private DiskModel model = new DiskModel.Hdd( ); // how long each access takes
+
+    private DiskImage image; // the blocks, in the heap or mapped from the DISK file
+    static final int READ = 1;
+    static final int WRITE = 2;
+    static final int SYNC = 3;
+    static final int READV = 4;
+    static final int WRITEV = 5;
+    private final int MAXQUEUE = 16; // requests waiting to be served
+    private int currentBlockId;
+
+    // a request waiting in the queue; blockId is -1 for a sync
+    static class Request {
+        final int command;
+        final int blockId; // the block the head goes to first
+        final byte buffer[];
+        final int vectorIds[]; // block ids of a READV/WRITEV, in ascending order
+        final byte vectorBuffers[][]; // their buffers, in the same order
+        private boolean done; // set by the disk interrupt when the request is served
+        long queuedAt; // System.nanoTime( ) when the request joined the queue
+        long startedAt; // and when the disk took it out
+        int tracks; // head movement serving it
+
+        Request( int command, int blockId, byte buffer[],
+                 int vectorIds[], byte vectorBuffers[][] ) {
+            this.command = command;
+            this.blockId = blockId;
+            this.buffer = buffer;
+            this.vectorIds = vectorIds;
+            this.vectorBuffers = vectorBuffers;
+        }
+
+        // sleeps until the request has been served. only the thread that
+        // made the request waits here, so complete wakes exactly that one
+        public void waitServed( ) {
+            long start = System.nanoTime( );
+            if ( await( ) )
+                IoStats.parked( System.nanoTime( ) - start );
+        }
+
+        // waits for done; returns whether there was anything to wait for
+        synchronized boolean await( ) {
+            boolean waited = false;
+            while ( done == false ) {
+                waited = true;
+                try {
+                    wait( );
+                } catch ( InterruptedException e ) {
+                    SysLib.cerr( e.toString( ) + "\n" );
+                }
+            }
+            return waited;
+        }
+
+        // called by the disk interrupt for the request it has just served
+        public synchronized void complete( ) {
+            done = true;
+            notify( );
+        }
+    }
+
+    private final ArrayList<Request> queue = new ArrayList<Request>( );
+    private DiskScheduler scheduler = DiskScheduler.forName( DiskScheduler.CLOOK );
+
+    private long seekTracks; // total head movement, in tracks
+    private long syncBytes; // bytes syncs wrote to the image file
+
+    public Disk( int totalBlocks ) {
+        this( DiskImage.open( DiskImage.HEAP, "DISK",
+                              ( totalBlocks > 0 ) ? totalBlocks : 1 ) );
+    }
+
+    // a disk over image; its size is the image's
+    public Disk( DiskImage image ) {
+        this.image = image;
+        diskSize = image.getBlocks( );
+        currentBlockId = 0;
+        seekTracks = 0;
+    }
+
+    public int getDiskSize( ) {
+        return diskSize;
+    }
+
+    public DiskImage getImage( ) {
+        return image;
+    }
+
+    // read, write, readv, writev and sync queue a request and return it;
+    // the caller then sleeps in its waitServed. they sleep first while the
+    // queue is full, and return null if a blockId is wrong.
+    public synchronized Request read( int blockId, byte buffer[] ) {
+        if ( blockId < 0 || blockId >= diskSize ) {
+            SysLib.cerr( "threadOS: a wrong blockId for read\n" );
+            return null;
+        }
+        return enqueue( new Request( READ, blockId, buffer, null, null ) );
+    }
+
+    public synchronized Request write( int blockId, byte buffer[] ) {
+        if ( blockId < 0 || blockId >= diskSize ) {
+            SysLib.cerr( "threadOS: a wrong blockId for write\n" );
+            return null;
+        }
+        return enqueue( new Request( WRITE, blockId, buffer, null, null ) );
+    }
+
+    // queues one request for several blocks; the disk serves them in
+    // ascending block order and interrupts once when all are done
+    public synchronized Request readv( int blockIds[], byte buffers[][] ) {
+        return vector( READV, blockIds, buffers );
+    }
+
+    public synchronized Request writev( int blockIds[], byte buffers[][] ) {
+        return vector( WRITEV, blockIds, buffers );
+    }
+
+    private Request vector( int vectorCommand, int blockIds[], byte buffers[][] ) {
+        for ( int i = 0; i < blockIds.length; i++ ) {
+            if ( blockIds[i] < 0 || blockIds[i] >= diskSize ) {
+                SysLib.cerr( "threadOS: a wrong blockId for " +
+                             ( vectorCommand == READV ? "readv\n" : "writev\n" ) );
+                return null;
+            }
+        }
+        if ( blockIds.length == 0 )
+            return null;
+
+        // sort (blockId, index) pairs so the head sweeps in one direction
+        long order[] = new long[ blockIds.length ];
+        for ( int i = 0; i < blockIds.length; i++ )
+            order[i] = ( (long)blockIds[i] << 32 ) | i;
+        Arrays.sort( order );
+        int vectorIds[] = new int[ blockIds.length ];
+        byte vectorBuffers[][] = new byte[ blockIds.length ][];
+        for ( int i = 0; i < order.length; i++ ) {
+            vectorIds[i] = (int)( order[i] >> 32 );
+            vectorBuffers[i] = buffers[ (int)order[i] ];
+        }
+        return enqueue( new Request( vectorCommand, vectorIds[0], null,
+                                     vectorIds, vectorBuffers ) );
+    }
+
+    public synchronized Request sync( ) {
+        return enqueue( new Request( SYNC, -1, null, null, null ) );
+    }
+
+    private Request enqueue( Request request ) {
+        long start = System.nanoTime( );
+        if ( queue.size( ) >= MAXQUEUE ) {
+            while ( queue.size( ) >= MAXQUEUE ) {
+                try {
+                    wait( ); // woken by waitRequest when a slot frees up
+                } catch ( InterruptedException e ) {
+                    SysLib.cerr( e.toString( ) + "\n" );
+                }
+            }
+            IoStats.queueFull( System.nanoTime( ) - start );
+        }
+        request.queuedAt = System.nanoTime( );
+        queue.add( request );
+        // only idle lanes wait on an empty queue, and nobody waits for room
+        // unless the queue is full, so this wakes a lane to serve it
+        notify( );
+        return request;
+    }
+
+    // chooses the policy that orders queued requests; see DiskScheduler
+    public synchronized void setScheduler( DiskScheduler scheduler ) {
+        this.scheduler = scheduler;
+    }
+
+    public synchronized DiskScheduler getScheduler( ) {
+        return scheduler;
+    }
+
+    // chooses the latency model; only before the disk is started, since
+    // the model's parallelism decides how many lanes serve requests
+    public synchronized void setModel( DiskModel model ) {
+        this.model = model;
+    }
+
+    public synchronized DiskModel getModel( ) {
+        return model;
+    }
+
+    // returns the tracks the head has crossed so far, and clears the count
+    // if reset is true
+    public synchronized long getSeekTracks( boolean reset ) {
+        long tracks = seekTracks;
+        if ( reset )
+            seekTracks = 0;
+        return tracks;
+    }
+
+    // returns the bytes syncs have written to the image file so far, and
+    // clears the count if reset is true
+    public synchronized long getSyncBytes( boolean reset ) {
+        long bytes = syncBytes;
+        if ( reset )
+            syncBytes = 0;
+        return bytes;
+    }
+
+    // waits for a request and takes the one the scheduler picks
+    private synchronized Request waitRequest( ) {
+        while ( queue.isEmpty( ) ) {
+            try {
+                wait( );
+            } catch ( InterruptedException e ) {
+                SysLib.cerr( e.toString( ) + "\n" );
+            }
+        }
+        if ( queue.size( ) == MAXQUEUE )
+            notifyAll( ); // threads waiting for room in enqueue
+        Request request = queue.remove( scheduler.next( queue, currentBlockId ) );
+        request.startedAt = System.nanoTime( );
+        return request;
+    }
+
+    // takes as long as the model says it takes to reach targetBlockId
+    // and transfer a block there; returns the tracks the head crossed
+    private int seek( int targetBlockId, boolean write ) {
+        int head;
+        int tracks;
+        synchronized ( this ) {
+            head = currentBlockId;
+            tracks = Math.abs( targetBlockId / trackSize - head / trackSize );
+            seekTracks += tracks;
+            currentBlockId = targetBlockId;
+        }
+        long seekTime = model.accessTime( head, targetBlockId, write );
+        if ( seekTime <= 0 )
+            return tracks;
+        try {
+            Thread.sleep( seekTime / 1000000, (int)( seekTime % 1000000 ) );
+        } catch ( InterruptedException e ) {
+            SysLib.cerr( e.toString( ) + "\n" );
+        }
+        return tracks;
+    }
+
+    // the interrupt completes request, waking the thread that made it
+    private void finishRequest( Request request, long bytes ) {
+        IoStats.served( request, bytes, System.nanoTime( ) );
+        SysLib.disk( request );
+    }
+
+    // serves every block of a READV/WRITEV before the single interrupt
+    private void transferVector( Request request ) {
+        for ( int i = 0; i < request.vectorIds.length; i++ ) {
+            int blockId = request.vectorIds[i];
+            boolean write = request.command == WRITEV;
+            request.tracks += seek( blockId, write );
+            synchronized ( image ) {
+                if ( write )
+                    image.write( blockId, request.vectorBuffers[i] );
+                else
+                    image.read( blockId, request.vectorBuffers[i] );
+            }
+        }
+    }
+
+    // a model that serves several requests at once gets one lane per
+    // request; this thread is the first lane
+    public void run ( ) {
+        for ( int lane = 1; lane < model.getParallelism( ); lane++ ) {
+            Thread helper = new Thread( this::serve );
+            helper.setDaemon( true );
+            helper.start( );
+        }
+        serve( );
+    }
+
+    private void serve( ) {
+        while ( true ) {
+            Request request = waitRequest( );
+            long bytes = blockSize;
+            switch( request.command ) {
+                case READ:
+                    request.tracks = seek( request.blockId, false );
+                    synchronized ( image ) {
+                        image.read( request.blockId, request.buffer );
+                    }
+                    break;
+                case WRITE:
+                    request.tracks = seek( request.blockId, true );
+                    synchronized ( image ) {
+                        image.write( request.blockId, request.buffer );
+                    }
+                    break;
+                case READV:
+                case WRITEV:
+                    transferVector( request );
+                    bytes = (long)request.vectorIds.length * blockSize;
+                    break;
+                case SYNC:
+                    seek( currentBlockId, true );
+                    long written;
+                    synchronized ( image ) {
+                        written = image.sync( );
+                    }
+                    synchronized ( this ) {
+                        syncBytes += written;
+                    }
+                    bytes = written;
+                    break;
+            }
+            finishRequest( request, bytes );
+        }
+    }
+}
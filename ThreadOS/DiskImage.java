@@ -0,0 +1,191 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * A DiskImage holds the contents of the simulated disk, the DISK file, and is what the Disk thread copies blocks in
+ * and out of. There are two kinds:
+ *   heap   - the whole image is read into a byte array at boot. A sync writes back only the blocks written since the
+ *            last one, each run of adjacent dirty blocks as one positional write, so frequent syncs stay cheap. The
+ *            disk can be no larger than the Java heap allows.
+ *   mapped - the DISK file is mapped into memory with FileChannel.map and blocks are read and written straight in the
+ *            mapping. The operating system pages the image in and out, so the disk is limited by the file size rather
+ *            than the heap, and a sync only forces the pages that changed out to the file. Written blocks may reach
+ *            the file before a sync.
+ * Both kinds keep a bitset of the blocks written since the last sync, and a sync reports how many bytes it wrote.
+ * Only the Disk touches an image, holding the image's lock, since a parallel disk model serves from several lanes.
+ */
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+
+abstract class DiskImage {
+    public final static String HEAP = "heap";
+    public final static String MAPPED = "mapped";
+
+    // Opens the image of the given kind backed by fileName, holding at least blocks blocks.
+    // Returns null if there is no such kind or the file cannot be mapped.
+    static DiskImage open(String kind, String fileName, int blocks) {
+        switch (kind) {
+            case HEAP: return new Heap(fileName, blocks);
+            case MAPPED:
+                try {
+                    return new Mapped(fileName, blocks);
+                } catch (IOException e) {
+                    SysLib.cerr("threadOS: cannot map " + fileName + ": " + e + "\n");
+                    return null;
+                }
+            default: return null;
+        }
+    }
+
+    protected final BitSet dirty = new BitSet(); // blocks written since the last sync
+
+    // Returns the name open knows this kind of image by.
+    abstract String getKind();
+
+    // Returns the number of blocks the image holds.
+    abstract int getBlocks();
+
+    // Copies block blockId into buffer.
+    abstract void read(int blockId, byte[] buffer);
+
+    // Copies buffer into block blockId.
+    abstract void write(int blockId, byte[] buffer);
+
+    // Makes every block written so far durable in the backing file. Returns the bytes written to it.
+    abstract long sync();
+
+    private static class Heap extends DiskImage {
+        private final String fileName;
+        private final byte[] data;
+
+        Heap(String fileName, int blocks) {
+            this.fileName = fileName;
+            data = new byte[blocks * Disk.blockSize];
+            int readableSize = 0;
+            try {
+                FileInputStream ifstream = new FileInputStream(fileName);
+                readableSize = Math.min(ifstream.available(), data.length);
+                ifstream.read(data, 0, readableSize);
+                ifstream.close();
+            } catch (FileNotFoundException e) {
+                SysLib.cerr("threadOS: " + fileName + " created\n");
+            } catch (IOException e) {
+                SysLib.cerr(e.toString() + "\n");
+            }
+            dirty.set(readableSize / Disk.blockSize, blocks); // blocks the file does not hold yet
+        }
+
+        String getKind() {
+            return HEAP;
+        }
+
+        int getBlocks() {
+            return data.length / Disk.blockSize;
+        }
+
+        void read(int blockId, byte[] buffer) {
+            System.arraycopy(data, blockId * Disk.blockSize, buffer, 0, Disk.blockSize);
+        }
+
+        void write(int blockId, byte[] buffer) {
+            System.arraycopy(buffer, 0, data, blockId * Disk.blockSize, Disk.blockSize);
+            dirty.set(blockId);
+        }
+
+        // Writes each run of dirty blocks at its place in the file.
+        long sync() {
+            long written = 0;
+            try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+                FileChannel channel = file.getChannel();
+                for (int start = dirty.nextSetBit(0); start >= 0; start = dirty.nextSetBit(start)) {
+                    int end = dirty.nextClearBit(start);
+                    ByteBuffer run = ByteBuffer.wrap(data, start * Disk.blockSize, (end - start) * Disk.blockSize);
+                    long position = (long) start * Disk.blockSize;
+                    while (run.hasRemaining()) {
+                        position += channel.write(run, position);
+                    }
+                    written += (long) (end - start) * Disk.blockSize;
+                    start = end;
+                }
+                dirty.clear();
+            } catch (IOException e) {
+                SysLib.cerr(e.toString());
+            }
+            return written;
+        }
+    }
+
+    private static class Mapped extends DiskImage {
+        // A single mapping cannot pass 2GB, so large images are mapped in pieces of CHUNKBLOCKS blocks
+        private final static int CHUNKBLOCKS = (1 << 30) / Disk.blockSize;
+        private final MappedByteBuffer[] chunks;
+        private final int blocks;
+
+        // Maps fileName, growing it to blocks blocks if it is smaller. A larger file is mapped whole.
+        Mapped(String fileName, int blocks) throws IOException {
+            try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+                long size = Math.max(file.length() / Disk.blockSize, blocks);
+                if (size > Integer.MAX_VALUE) size = Integer.MAX_VALUE;
+                this.blocks = (int) size;
+                if (file.length() < size * Disk.blockSize) {
+                    file.setLength(size * Disk.blockSize); // sparse where the file system supports it
+                }
+                FileChannel channel = file.getChannel();
+                chunks = new MappedByteBuffer[(this.blocks + CHUNKBLOCKS - 1) / CHUNKBLOCKS];
+                for (int i = 0; i < chunks.length; i++) {
+                    long first = (long) i * CHUNKBLOCKS;
+                    long count = Math.min(CHUNKBLOCKS, this.blocks - first);
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, first * Disk.blockSize, count * Disk.blockSize);
+                }
+            } // the mappings stay valid after the channel is closed
+        }
+
+        String getKind() {
+            return MAPPED;
+        }
+
+        int getBlocks() {
+            return blocks;
+        }
+
+        // Positions the chunk holding blockId at the block and returns it.
+        private MappedByteBuffer seek(int blockId) {
+            MappedByteBuffer chunk = chunks[blockId / CHUNKBLOCKS];
+            chunk.position((blockId % CHUNKBLOCKS) * Disk.blockSize);
+            return chunk;
+        }
+
+        void read(int blockId, byte[] buffer) {
+            seek(blockId).get(buffer, 0, Disk.blockSize);
+        }
+
+        void write(int blockId, byte[] buffer) {
+            seek(blockId).put(buffer, 0, Disk.blockSize);
+            dirty.set(blockId);
+        }
+
+        // Forces out the chunks holding dirty blocks. The operating system only writes the pages that changed.
+        long sync() {
+            for (int i = 0; i < chunks.length; i++) {
+                int first = i * CHUNKBLOCKS;
+                int next = dirty.nextSetBit(first);
+                if (next >= 0 && next < first + CHUNKBLOCKS) {
+                    chunks[i].force();
+                }
+            }
+            long written = (long) dirty.cardinality() * Disk.blockSize;
+            dirty.clear();
+            return written;
+        }
+    }
+}
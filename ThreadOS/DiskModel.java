@@ -0,0 +1,167 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * A DiskModel decides how long the simulated disk takes to serve each block, and how many requests it can serve at
+ * once. The Disk sleeps for that long, so the model sets the pace of every disk-bound program. It is chosen at boot:
+ *   hdd    - the original ThreadOS disk: 20 ms to transfer a block plus 1 ms for every track the head crosses, one
+ *            request at a time.
+ *   zero   - no latency at all. Whatever time is left is CPU time, which shows whether a change is CPU-bound or was
+ *            only hiding simulated seeks.
+ *   ssd    - a fixed latency per read and per write, no seek penalty, and several requests served in parallel the
+ *            way an SSD's channels serve them.
+ *   replay - plays back latencies recorded from some other device, in order, starting over at the end of the trace.
+ * Head movement in tracks is counted by the Disk for every model, since it measures the block layout, not the time.
+ */
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+interface DiskModel {
+    String HDD = "hdd";
+    String ZERO = "zero";
+    String SSD = "ssd";
+    String REPLAY = "replay";
+
+    // Returns the model with the given name, or null if there is none. replay reads its latencies from trace.
+    static DiskModel forName(String name, String trace) {
+        switch (name) {
+            case HDD: return new Hdd();
+            case ZERO: return new Zero();
+            case SSD: return new Ssd();
+            case REPLAY: return Replay.load(trace);
+            default: return null;
+        }
+    }
+
+    // Returns the name forName knows this model by.
+    String getName();
+
+    // Returns the name and the parameters of the model, for people.
+    String describe();
+
+    // Returns how many requests the disk may serve at the same time.
+    int getParallelism();
+
+    // Returns the nanoseconds it takes to go from block head to block blockId and read or write it there.
+    long accessTime(int head, int blockId, boolean write);
+
+    class Hdd implements DiskModel {
+        private final static int TRANSFERTIME = 20; // ms per block
+        private final static int DELAYPERTRACK = 1; // ms per track crossed
+
+        public String getName() {
+            return HDD;
+        }
+
+        public String describe() {
+            return HDD + ": " + TRANSFERTIME + " ms per block + " + DELAYPERTRACK + " ms per track, 1 request at a time";
+        }
+
+        public int getParallelism() {
+            return 1;
+        }
+
+        public long accessTime(int head, int blockId, boolean write) {
+            int tracks = Math.abs(blockId / Disk.trackSize - head / Disk.trackSize);
+            return (TRANSFERTIME + DELAYPERTRACK * tracks) * 1000000L;
+        }
+    }
+
+    class Zero implements DiskModel {
+        public String getName() {
+            return ZERO;
+        }
+
+        public String describe() {
+            return ZERO + ": no latency";
+        }
+
+        public int getParallelism() {
+            return 1;
+        }
+
+        public long accessTime(int head, int blockId, boolean write) {
+            return 0;
+        }
+    }
+
+    class Ssd implements DiskModel {
+        private final static int READTIME = 100; // us per block read
+        private final static int WRITETIME = 250; // us per block written
+        private final static int CHANNELS = 4; // requests served in parallel
+
+        public String getName() {
+            return SSD;
+        }
+
+        public String describe() {
+            return SSD + ": " + READTIME + " us per read, " + WRITETIME + " us per write, " + CHANNELS
+                + " requests at a time";
+        }
+
+        public int getParallelism() {
+            return CHANNELS;
+        }
+
+        public long accessTime(int head, int blockId, boolean write) {
+            return (write ? WRITETIME : READTIME) * 1000L;
+        }
+    }
+
+    class Replay implements DiskModel {
+        private final String trace;
+        private final long[] latencies; // ns, in recorded order
+        private int next = 0;
+
+        private Replay(String trace, long[] latencies) {
+            this.trace = trace;
+            this.latencies = latencies;
+        }
+
+        // Reads a trace of one latency in microseconds per line; blank lines and lines starting with # are skipped.
+        // Returns null if the trace cannot be read or holds no latencies.
+        static Replay load(String trace) {
+            if (trace == null) return null;
+            ArrayList<Long> recorded = new ArrayList<>();
+            try (BufferedReader in = new BufferedReader(new FileReader(trace))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) continue;
+                    recorded.add(Math.max(0, Long.parseLong(line)) * 1000L);
+                }
+            } catch (IOException | NumberFormatException e) {
+                SysLib.cerr("threadOS: cannot replay " + trace + ": " + e + "\n");
+                return null;
+            }
+            if (recorded.isEmpty()) return null;
+            long[] latencies = new long[recorded.size()];
+            for (int i = 0; i < latencies.length; i++) latencies[i] = recorded.get(i);
+            return new Replay(trace, latencies);
+        }
+
+        public String getName() {
+            return REPLAY;
+        }
+
+        public String describe() {
+            return REPLAY + ": " + latencies.length + " latencies from " + trace;
+        }
+
+        public int getParallelism() {
+            return 1;
+        }
+
+        public synchronized long accessTime(int head, int blockId, boolean write) {
+            long latency = latencies[next];
+            next = (next + 1) % latencies.length;
+            return latency;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * DiskSchedBench compares the disk scheduling policies. For each policy it starts a number of ThreadOS threads that
+ * all hit random blocks across the disk at once, so requests queue up in the Disk and the policy decides their order.
+ * Each thread reads a block and, every fourth request, writes the block it just read back unchanged, so the disk's
+ * contents are left alone. It prints the total seek distance, the mean and worst request latency, and the elapsed time
+ * of each policy. Every policy sees the same block sequence.
+ * Usage: l DiskSchedBench [threads] [requests per thread]
+ */
+
+import java.util.Random;
+
+class DiskSchedBench extends Thread {
+    private final static String[] POLICIES = { DiskScheduler.FCFS, DiskScheduler.SSTF, DiskScheduler.SCAN, DiskScheduler.CLOOK };
+    private final static int DEFAULTTHREADS = 8;
+    private final static int DEFAULTREQUESTS = 24;
+    private final static int DISKBLOCKS = 1000;
+
+    // Latency totals of the current run, filled in by the worker threads
+    private static long totalLatency;
+    private static long maxLatency;
+    private static int requests;
+
+    private final boolean worker;
+    private final int threads;
+    private final int perThread;
+    private final long seed;
+
+    public DiskSchedBench(String args[]) {
+        // Workers are started as: DiskSchedBench worker [requests] [seed]
+        worker = args.length > 0 && args[0].equals("worker");
+        threads = !worker && args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTTHREADS;
+        perThread = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULTREQUESTS;
+        seed = worker ? Long.parseLong(args[2]) : 0;
+    }
+
+    public DiskSchedBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        if (worker) {
+            work();
+            SysLib.exit();
+            return;
+        }
+        String before = SysLib.disksched("");
+        SysLib.cout("disk model " + SysLib.diskmodel() + "\n");
+        for (String policy : POLICIES) {
+            SysLib.disksched(policy);
+            reset();
+            int[] counts = new int[4];
+            SysLib.iostat(counts, true);
+            long start = System.currentTimeMillis();
+            for (int t = 0; t < threads; t++) {
+                SysLib.exec(new String[] { "DiskSchedBench", "worker", Integer.toString(perThread), Integer.toString(430 + t) });
+            }
+            for (int t = 0; t < threads; t++) {
+                SysLib.join();
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            SysLib.iostat(counts, true);
+            report(policy, counts[2], elapsed);
+        }
+        SysLib.disksched(before);
+        SysLib.exit();
+    }
+
+    // One thread's share of the load: random reads, with every fourth block written back as it was read.
+    private void work() {
+        Random random = new Random(seed);
+        byte[] block = new byte[Disk.blockSize];
+        for (int i = 0; i < perThread; i++) {
+            int blockId = random.nextInt(DISKBLOCKS);
+            long start = System.nanoTime();
+            SysLib.rawread(blockId, block);
+            if (i % 4 == 3) {
+                SysLib.rawwrite(blockId, block);
+            }
+            record(System.nanoTime() - start);
+        }
+    }
+
+    private static synchronized void reset() {
+        totalLatency = 0;
+        maxLatency = 0;
+        requests = 0;
+    }
+
+    private static synchronized void record(long latency) {
+        totalLatency += latency;
+        maxLatency = Math.max(maxLatency, latency);
+        requests++;
+    }
+
+    private static synchronized void report(String policy, int tracks, long elapsed) {
+        SysLib.cout(policy + ": " + requests + " requests, " + tracks + " tracks of seek, mean latency "
+            + totalLatency / Math.max(1, requests) / 1000000 + " ms, worst " + maxLatency / 1000000 + " ms, "
+            + elapsed + " ms\n");
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * A DiskScheduler decides which of the requests waiting in the Disk's queue is served next. Requests from different
+ * threads pile up while the disk is busy, and the order they are served in decides how far the head travels:
+ *   fcfs  - first come, first served; fair, but the head goes wherever the next caller happened to point it.
+ *   sstf  - shortest seek time first; the request closest to the head. Short seeks, but far requests can starve.
+ *   scan  - the elevator; the head keeps moving in one direction, serving requests as it passes them, and turns
+ *           around at the last request in that direction (the LOOK refinement; it never travels to an empty end).
+ *   clook - circular LOOK; like scan but only while moving up. After the highest request the head jumps back to the
+ *           lowest one, so every block waits at most one sweep and the middle of the disk is not favored.
+ * A SYNC has no position on the disk; it is treated as sitting under the head.
+ */
+
+import java.util.List;
+
+abstract class DiskScheduler {
+    public final static String FCFS = "fcfs";
+    public final static String SSTF = "sstf";
+    public final static String SCAN = "scan";
+    public final static String CLOOK = "clook";
+
+    // Returns the scheduler with the given name, or null if there is none.
+    static DiskScheduler forName(String name) {
+        switch (name) {
+            case FCFS: return new Fcfs();
+            case SSTF: return new Sstf();
+            case SCAN: return new Scan();
+            case CLOOK: return new CLook();
+            default: return null;
+        }
+    }
+
+    // Returns the name forName knows this scheduler by.
+    abstract String getName();
+
+    // Returns the index in queue, oldest request first, of the request to serve with the head over block head.
+    // queue is never empty.
+    abstract int next(List<Disk.Request> queue, int head);
+
+    // Where the head has to go for request.
+    protected static int blockOf(Disk.Request request, int head) {
+        return request.blockId < 0 ? head : request.blockId;
+    }
+
+    // Returns the request closest to head at or above it (up) or at or below it (!up), or -1 if there is none.
+    // Ties go to the older request.
+    protected static int nearest(List<Disk.Request> queue, int head, boolean up) {
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < queue.size(); i++) {
+            int distance = up ? blockOf(queue.get(i), head) - head : head - blockOf(queue.get(i), head);
+            if (distance >= 0 && distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    private static class Fcfs extends DiskScheduler {
+        String getName() {
+            return FCFS;
+        }
+
+        int next(List<Disk.Request> queue, int head) {
+            return 0;
+        }
+    }
+
+    private static class Sstf extends DiskScheduler {
+        String getName() {
+            return SSTF;
+        }
+
+        int next(List<Disk.Request> queue, int head) {
+            int up = nearest(queue, head, true);
+            int down = nearest(queue, head, false);
+            if (up < 0) return down;
+            if (down < 0) return up;
+            return blockOf(queue.get(up), head) - head <= head - blockOf(queue.get(down), head) ? up : down;
+        }
+    }
+
+    private static class Scan extends DiskScheduler {
+        private boolean up = true; // direction the head is sweeping in
+
+        String getName() {
+            return SCAN;
+        }
+
+        int next(List<Disk.Request> queue, int head) {
+            int next = nearest(queue, head, up);
+            if (next < 0) { // nothing left this way: turn around
+                up = !up;
+                next = nearest(queue, head, up);
+            }
+            return next;
+        }
+    }
+
+    private static class CLook extends DiskScheduler {
+        String getName() {
+            return CLOOK;
+        }
+
+        int next(List<Disk.Request> queue, int head) {
+            int next = nearest(queue, head, true);
+            return next >= 0 ? next : nearest(queue, -1, true); // jump back to the lowest request
+        }
+    }
+}
@@ -9,17 +9,47 @@
  * organization (like the superblock and directories) and the details of individual files through the file table.  
  * It has the tools to format your disk, open, close, read, write, and delete files, and it keeps everything synced 
  * between the disk and memory. You can even use it to jump around within a file using that seek pointer.
+ * Block sizes are whatever the disk was formatted with (see SuperBlock), so sizes here come from BlockIO.blockSize().
+ * A file can be switched to compression while it is empty; its data is then kept as compressed chunks (see ChunkMap)
+ * and read and written a chunk at a time, bypassing write-behind and read-ahead.
  */
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class FileSystem {
     private SuperBlock superblock;
     private Directory directory;
     private FileTable filetable;
+    private boolean contiguous = true; // allocate extents sized to each write
+
+    private final static int MIN_READAHEAD = 2; // window after the first sequential read
+    private int maxReadAhead = 0; // largest read-ahead window in blocks, 0 = read-ahead off
+    private ReadAhead readAhead;
+
+    public final static int MAX_DIRTY_BLOCKS = 64; // write-behind blocks held in memory before a writer must flush
+    public final static int FLUSH_AGE = 1000; // ms a file's write-behind data may wait before the timer flushes it
+    private boolean writeBehind = false; // hold written data in memory and allocate blocks when it is flushed
+    private final LinkedHashMap<Short, Inode> dirtyInodes = new LinkedHashMap<>(); // inodes with write-behind data, oldest first
+    private int dirtyBlocks = 0; // write-behind blocks held across all inodes
+    private int reservedBlocks = 0; // free disk blocks promised to write-behind blocks not yet allocated
+
+    private final IdentityHashMap<ByteBuffer, MappedRegion> mappings = new IdentityHashMap<>(); // mmap views
+    private final int defaultBlockSize; // block size format uses when none is given
 
     public FileSystem(int diskBlocks) {
+        this(diskBlocks, Disk.blockSize);
+    }
+
+    // diskBlocks counts disk blocks; a blank disk, and format without a block size, get defaultBlockSize-byte blocks.
+    public FileSystem(int diskBlocks, int defaultBlockSize) {
+        this.defaultBlockSize = defaultBlockSize;
         // create superblock, and format disk with 64 inodes in default
-        superblock = new SuperBlock(diskBlocks);
+        superblock = new SuperBlock(diskBlocks, defaultBlockSize);
         // create directory, and register "/" in directory entry 0
         directory = new Directory(superblock.inodeBlocks);
         // file table is created, and store directory in the file table
@@ -37,21 +67,50 @@ public class FileSystem {
     }
 
     void sync() {
+        syncFiles();
+        // superblock synchronization
+        superblock.sync();
+        // push the cached blocks (data, inodes, free space bitmap) out to disk
+        BlockIO.sync();
+    }
+
+    // Writes the directory and the data still held by write-behind, with their inodes, to their blocks. The kernel's
+    // SYNC calls this before it writes back the cache and saves the disk image, so a synced file can be found and
+    // read back after a remount.
+    void syncFiles() {
         // directory synchronizatioin
         FileTableEntry dirEnt = open("/", "w");
         byte[] dirData = directory.directory2bytes();
         write(dirEnt, dirData);
         close(dirEnt);
-        // superblock synchronization
-        superblock.sync();
+        // data still held by write-behind
+        flushDirty(0);
+    }
+
+    // Writes the free space bitmap blocks that changed since the last sync. The kernel's SYNC calls this before it
+    // saves the disk image, so the saved bitmap always matches the saved inodes.
+    void syncFreeMap() {
+        superblock.syncFreeMap();
     }
 
     boolean format(int files) {
+        return format(files, defaultBlockSize);
+    }
+
+    // Formats the disk with room for files files in blockSize-byte blocks. Returns false if blockSize is not a power
+    // of two from 512 to BlockIO.MAXBLOCKSIZE.
+    boolean format(int files, int blockSize) {
+        if (!BlockIO.isBlockSize(blockSize)) return false;
         // wait until all filetable entries are destructed
         while (filetable.fempty() == false);
 
         // format superblock, initialize inodes, and create a free list
-        superblock.format(files);
+        superblock.format(files, blockSize);
+        synchronized (dirtyInodes) { // whatever write-behind still held belonged to the old layout
+            dirtyInodes.clear();
+            dirtyBlocks = 0;
+            reservedBlocks = 0;
+        }
 
         // create directory, and register "/" in directory entry 0
         directory = new Directory(superblock.inodeBlocks);
@@ -59,9 +118,32 @@ public class FileSystem {
         // file table is created, and store directory in the file table
         filetable = new FileTable(directory);
 
+        // make the fresh layout durable even when it is still sitting in the cache
+        BlockIO.sync();
+
         return true;
     }
 
+    // Sets the largest read-ahead window in blocks; 0 turns read-ahead off. It only runs over the buffer cache.
+    void setReadAhead(int maxBlocks) {
+        maxReadAhead = BlockIO.isCached() ? Math.max(0, maxBlocks) : 0;
+        if (maxReadAhead > 0 && readAhead == null) {
+            readAhead = new ReadAhead();
+            readAhead.start();
+        }
+    }
+
+    // Turns write-behind on or off. With it on, written data waits in memory and gets its blocks when it is flushed:
+    // on close, on sync, when more than MAX_DIRTY_BLOCKS are held, and from a timer once it is FLUSH_AGE ms old.
+    void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+        if (writeBehind) {
+            // The timer flushes from its own thread, through the cache or straight to the disk: each disk request
+            // has its own completion, and Inode.toDisk keeps the blocks inodes share consistent between threads.
+            new WriteBehind(this).start();
+        }
+    }
+
     //implement
     // Opens a file given its name and the mode ('r', 'w', 'w+', 'a'). Returns a FileTableEntry.
     // If opening for read ('r') and the file doesn't exist, it returns null. 'a' mode sets the seek pointer to the file's end.
@@ -90,6 +172,10 @@ public class FileSystem {
             if (ftEnt.count > 0) // my children or parent are(is) using it
                 return true;
         }
+        unmapAll(ftEnt); // Changes made through mmap views go back to the file first
+        synchronized(ftEnt.inode) {
+            flushInode(ftEnt.iNumber, ftEnt.inode); // Write-behind data reaches the disk before the inode does
+        }
         return filetable.ffree(ftEnt);
     }
     //implement
@@ -106,37 +192,124 @@ public class FileSystem {
     // Returns the number of bytes read or -1 if the file is open in write-only or append mode.
     int read(FileTableEntry ftEnt, byte[] buffer) {
         if (ftEnt.mode.equals("w") || ftEnt.mode.equals("a")) return -1; // Can't read in write-only or append mode
+        if (ftEnt.inode.compressed) {
+            synchronized(ftEnt) {
+                return readCompressed(ftEnt, buffer);
+            }
+        }
 
         int bufferSize = buffer.length;
         int bytesRead = 0;
-        int error = -1;
-        int blockSize = Disk.blockSize;
-        int readSize;
+        int blockSize = BlockIO.blockSize();
 
         synchronized(ftEnt) { // Ensure thread-safe access to the file table entry
-            while (ftEnt.seekPtr < fsize(ftEnt) && bufferSize > 0) {
-                int blockNumber = ftEnt.inode.findTargetBlock(ftEnt.seekPtr);
-                if (blockNumber == error) break; // Exit if can't find the block
+            int end = (int) Math.min((long) fsize(ftEnt), (long) ftEnt.seekPtr + bufferSize);
+            if (ftEnt.seekPtr >= end) return 0; // Nothing left to read
+            int startPtr = ftEnt.seekPtr;
+            int firstIndex = ftEnt.seekPtr / blockSize;
+            int blocks = 0;
+            boolean cached;
 
-                byte[] blockData = new byte[blockSize];
-                SysLib.rawread(blockNumber, blockData);
-                // Calculate offsets and sizes for copying data
-                int dataOffset = ftEnt.seekPtr % blockSize;
-                int blockBytesLeft = blockSize - dataOffset;
-                int fileBytesLeft = fsize(ftEnt) - ftEnt.seekPtr;
-                readSize = Math.min(blockBytesLeft, Math.min(fileBytesLeft, bufferSize));
-                // Copy from blockData to buffer
-                System.arraycopy(blockData, dataOffset, buffer, bytesRead, readSize);
-                // Update pointers and counters
-                ftEnt.seekPtr += readSize;
-                bytesRead += readSize;
-                bufferSize -= readSize;
+            synchronized(ftEnt.inode) { // Keeps write-behind data from being flushed mid-read
+                cached = BlockIO.isCached() && ftEnt.inode.dirtyBlocks.isEmpty();
+                if (cached) {
+                    blocks = readCached(ftEnt, buffer, end);
+                }
+            }
+            if (!cached) {
+                blocks = readStaged(ftEnt, buffer, end); // Holds the inode only while it plans the read
             }
+            if (blocks == 0) return 0;
+            bytesRead = ftEnt.seekPtr - startPtr;
+            readAhead(ftEnt, startPtr, firstIndex + blocks - 1);
         }
 
         return bytesRead; // Return the total number of bytes read
     }
 
+    // Reads up to end through the cache, which copies straight from its block frames into buffer.
+    // Nothing is staged or allocated on the way. Returns the number of blocks read.
+    private int readCached(FileTableEntry ftEnt, byte[] buffer, int end) {
+        int blockSize = BlockIO.blockSize();
+        int firstIndex = ftEnt.seekPtr / blockSize;
+        int spanned = (end - 1) / blockSize - firstIndex + 1;
+        BlockRange range = BlockIO.range(spanned);
+        while (range.count < spanned) {
+            int blockNumber = ftEnt.inode.findTargetBlock((firstIndex + range.count) * blockSize);
+            if (blockNumber == -1) break; // Stop at the first block that can't be found
+            range.blocks[range.count++] = blockNumber;
+        }
+        if (range.count == 0) return 0;
+
+        end = Math.min(end, (firstIndex + range.count) * blockSize);
+        range.offset = ftEnt.seekPtr % blockSize;
+        range.buffer = buffer;
+        range.bufferOffset = 0;
+        range.length = end - ftEnt.seekPtr;
+        BlockIO.readRange(range);
+        range.buffer = null; // Don't keep the caller's buffer reachable
+        ftEnt.seekPtr = end;
+        return range.count;
+    }
+
+    // Reads up to end a block at a time: write-behind blocks are copied from memory while the inode is held, and the
+    // rest go to the disk as one request, staged in pooled buffers, once it is let go, so other reads of the file
+    // reach the disk meanwhile. Returns the number of blocks read.
+    private int readStaged(FileTableEntry ftEnt, byte[] buffer, int end) {
+        int blockSize = BlockIO.blockSize();
+        int start = ftEnt.seekPtr;
+        int firstIndex = start / blockSize;
+        int spanned = (end - 1) / blockSize - firstIndex + 1;
+        int[] readIndexes = new int[spanned];
+        int[] readNumbers = new int[spanned];
+        byte[][] readData = new byte[spanned][];
+        int reads = 0;
+        int blocks = 0;
+        synchronized(ftEnt.inode) {
+            ArrayList<Integer> dirtyIndexes = new ArrayList<>();
+            while (blocks < spanned) {
+                int blockIndex = firstIndex + blocks;
+                if (ftEnt.inode.dirtyBlocks.containsKey(blockIndex)) {
+                    dirtyIndexes.add(blockIndex);
+                } else {
+                    int blockNumber = ftEnt.inode.findTargetBlock(blockIndex * blockSize);
+                    if (blockNumber == -1) break; // Stop at the first block that can't be found
+                    readIndexes[reads] = blockIndex;
+                    readNumbers[reads++] = blockNumber;
+                }
+                blocks++;
+            }
+            if (blocks == 0) return 0;
+            end = Math.min(end, (firstIndex + blocks) * blockSize);
+            for (int blockIndex : dirtyIndexes) {
+                copyBlock(ftEnt.inode.dirtyBlocks.get(blockIndex), blockIndex, buffer, start, end);
+            }
+        }
+
+        if (reads > 0) {
+            for (int i = 0; i < reads; i++) {
+                readData[i] = BufferPool.take();
+            }
+            BlockIO.readv(Arrays.copyOf(readNumbers, reads), Arrays.copyOf(readData, reads));
+            for (int i = 0; i < reads; i++) {
+                copyBlock(readData[i], readIndexes[i], buffer, start, end);
+                BufferPool.give(readData[i]);
+            }
+        }
+        ftEnt.seekPtr = end;
+        return blocks;
+    }
+
+    // Copies the part of the file's block blockIndex that falls between file offsets start and end into buffer,
+    // which holds the file from start on.
+    private static void copyBlock(byte[] block, int blockIndex, byte[] buffer, int start, int end) {
+        int from = Math.max(start, blockIndex * BlockIO.blockSize());
+        int to = Math.min(end, (blockIndex + 1) * BlockIO.blockSize());
+        if (from < to) {
+            System.arraycopy(block, from % BlockIO.blockSize(), buffer, from - start, to - from);
+        }
+    }
+
     //implement
     // Writes data from a buffer into the file associated with the provided FileTableEntry.
     // Handles file expansion and updates the file's seek pointer and length as necessary.
@@ -146,54 +319,270 @@ public class FileSystem {
         // Ensure file is open in a writable mode
         if (!ftEnt.mode.equals("w") && !ftEnt.mode.equals("w+") && !ftEnt.mode.equals("a")) return -1;
 
+        if (ftEnt.inode.compressed) {
+            synchronized(ftEnt) {
+                return writeCompressed(ftEnt, buffer);
+            }
+        }
+        if (writeBehind) {
+            synchronized(ftEnt) {
+                return bufferWrite(ftEnt, buffer);
+            }
+        }
+
         synchronized(ftEnt) { // Synchronize on the file table entry for thread safety
-            int bytesWritten = 0;
             int bufferSize = buffer.length;
+            if (bufferSize == 0) return 0;
+            int blockSize = BlockIO.blockSize();
 
-            while (bufferSize > bytesWritten) {
-                // Find the target block for the current seek pointer
-                int blockNumber = ftEnt.inode.findTargetBlock(ftEnt.seekPtr);
-                if (blockNumber == -1) { // If no block found, allocate a new one
-                    short newBlock = findFreeBlock();
-                    // Attempt to register the new block
-                    boolean success = newBlock != -1 && registerTargetBlock(ftEnt, ftEnt.seekPtr, newBlock);
-                    if (!success) {
-                        break; // Exit if block allocation or registration fails
+            // Find or allocate every block the write spans so they can go to the disk as one request
+            int firstIndex = ftEnt.seekPtr / blockSize;
+            int lastIndex = (ftEnt.seekPtr + bufferSize - 1) / blockSize;
+            BlockRange range = BlockIO.range(lastIndex - firstIndex + 1);
+            synchronized(ftEnt.inode) { // Other entries open on the file share its inode and extents
+                while (range.count <= lastIndex - firstIndex) {
+                    int blockIndex = firstIndex + range.count;
+                    int blockNumber = ftEnt.inode.findTargetBlock(blockIndex * blockSize);
+                    if (blockNumber == -1) { // If no block found, allocate a run for the rest of this write
+                        if (!allocateBlocks(ftEnt.inode, lastIndex - blockIndex + 1, false)) {
+                            break; // Disk or extent table full: write the blocks we have
+                        }
+                        blockNumber = ftEnt.inode.findTargetBlock(blockIndex * blockSize);
+                        range.freshFrom = Math.min(range.freshFrom, range.count); // first block allocated by this call
                     }
-                    blockNumber = newBlock;
+                    range.blocks[range.count++] = blockNumber;
+                }
+            }
+            if (range.count == 0) return 0;
+            int end = Math.min(ftEnt.seekPtr + bufferSize, (firstIndex + range.count) * blockSize);
+
+            if (BlockIO.isCached()) {
+                // The cache copies straight into its block frames, reading a partly written old block itself
+                range.offset = ftEnt.seekPtr % blockSize;
+                range.buffer = buffer;
+                range.bufferOffset = 0;
+                range.length = end - ftEnt.seekPtr;
+                BlockIO.writeRange(range);
+                range.buffer = null; // Don't keep the caller's buffer reachable
+            } else {
+                writeStaged(range, buffer, ftEnt.seekPtr, end);
+            }
+            int bytesWritten = end - ftEnt.seekPtr;
+            ftEnt.seekPtr = end;
+
+            // Update file length if it has grown
+            synchronized(ftEnt.inode) {
+                if (ftEnt.seekPtr > ftEnt.inode.length) {
+                    ftEnt.inode.length = ftEnt.seekPtr; // Update inode length
+                    ftEnt.inode.toDisk(ftEnt.iNumber); // Save the inode to disk
                 }
+            }
 
-                byte[] blockData = new byte[Disk.blockSize];
-                SysLib.rawread(blockNumber, blockData); // Read existing block data
+            return bytesWritten; // Return the number of bytes written
+        }
+    }
 
-                // Calculate offset and size for the write operation
-                int dataOffset = ftEnt.seekPtr % Disk.blockSize;
-                int spaceLeft = Disk.blockSize - dataOffset;
-                int writeSize = Math.min(spaceLeft, bufferSize - bytesWritten);
+    // Reads at offset, clamped to the file like a seek, and leaves the seek pointer where it was.
+    // IoRing.CURRENT reads at the seek pointer and moves it, like read.
+    int read(FileTableEntry ftEnt, byte[] buffer, int offset) {
+        if (offset == IoRing.CURRENT) return read(ftEnt, buffer);
+        // A cursor of its own keeps positional reads of one open file from waiting on each other
+        FileTableEntry cursor = new FileTableEntry(ftEnt.inode, ftEnt.iNumber, ftEnt.mode);
+        cursor.seekPtr = Math.max(0, Math.min(offset, fsize(ftEnt)));
+        cursor.raOffset = -1; // Not part of a sequential run
+        return read(cursor, buffer);
+    }
 
-                // Write buffer data to block data
-                System.arraycopy(buffer, bytesWritten, blockData, dataOffset, writeSize);
-                SysLib.rawwrite(blockNumber, blockData); // Write the block back to disk
+    // Writes at offset, clamped to the file like a seek, and leaves the seek pointer where it was.
+    // IoRing.CURRENT, or a file opened to append, writes at the seek pointer and moves it, like write.
+    int write(FileTableEntry ftEnt, byte[] buffer, int offset) {
+        if (offset == IoRing.CURRENT || ftEnt.mode.equals("a")) return write(ftEnt, buffer);
+        synchronized(ftEnt) {
+            int seekPtr = ftEnt.seekPtr;
+            ftEnt.seekPtr = Math.max(0, Math.min(offset, fsize(ftEnt)));
+            try {
+                return write(ftEnt, buffer);
+            } finally {
+                ftEnt.seekPtr = seekPtr;
+            }
+        }
+    }
 
-                // Update pointers and counters
-                ftEnt.seekPtr += writeSize;
-                bytesWritten += writeSize;
+    // Makes the file a compressed file, whose data is kept as compressed chunks. Only an empty file can switch, since
+    // data already written stays as it is. Returns false if the file holds data or is open for reading only.
+    boolean compress(FileTableEntry ftEnt) {
+        if (ftEnt.mode.equals("r")) return false;
+        synchronized(ftEnt.inode) {
+            Inode inode = ftEnt.inode;
+            if (inode.compressed) return true;
+            if (inode.length > 0 || inode.blockCount() > 0 || !inode.dirtyBlocks.isEmpty()) return false;
+            inode.compressed = true;
+            inode.toDisk(ftEnt.iNumber);
+            return true;
+        }
+    }
+
+    // Compressed version of read: decompresses each chunk the read covers and copies out the part it wants.
+    // Returns -1 if the first chunk does not hold valid compressed data.
+    private int readCompressed(FileTableEntry ftEnt, byte[] buffer) {
+        Inode inode = ftEnt.inode;
+        synchronized(inode) {
+            int end = (int) Math.min((long) inode.length, (long) ftEnt.seekPtr + buffer.length);
+            ChunkMap map = chunkMap(inode);
+            int bytesRead = 0;
+            while (ftEnt.seekPtr < end) {
+                int chunk = ftEnt.seekPtr / ChunkMap.CHUNKSIZE;
+                if (!loadChunk(inode, map, chunk)) return bytesRead > 0 ? bytesRead : -1;
+                int from = ftEnt.seekPtr - chunk * ChunkMap.CHUNKSIZE;
+                int to = Math.min(ChunkMap.CHUNKSIZE, end - chunk * ChunkMap.CHUNKSIZE);
+                System.arraycopy(map.cached, from, buffer, bytesRead, to - from);
+                bytesRead += to - from;
+                ftEnt.seekPtr += to - from;
             }
+            return bytesRead;
+        }
+    }
 
-            // Update file length if it has grown
-            if (ftEnt.seekPtr > ftEnt.inode.length) {
-                ftEnt.inode.length = ftEnt.seekPtr; // Update inode length
-                ftEnt.inode.toDisk(ftEnt.iNumber); // Save the inode to disk
+    // Compressed version of write: rebuilds each chunk the write touches, decompressing it first unless the write
+    // covers all of it, then compresses and stores it and saves the chunk map. Stops short where the disk, the
+    // extent table or the chunk map is full. Returns the number of bytes written.
+    private int writeCompressed(FileTableEntry ftEnt, byte[] buffer) {
+        Inode inode = ftEnt.inode;
+        synchronized(inode) {
+            ChunkMap map = chunkMap(inode);
+            int end = (int) Math.min((long) ftEnt.seekPtr + buffer.length, ChunkMap.maxFileSize(BlockIO.blockSize()));
+            byte[] packed = new byte[Lz4.maxCompressedLength(ChunkMap.CHUNKSIZE)];
+            int bytesWritten = 0;
+            while (ftEnt.seekPtr < end) {
+                int chunk = ftEnt.seekPtr / ChunkMap.CHUNKSIZE;
+                int chunkStart = chunk * ChunkMap.CHUNKSIZE;
+                int from = ftEnt.seekPtr - chunkStart;
+                int to = Math.min(ChunkMap.CHUNKSIZE, end - chunkStart);
+                int oldSize = Math.max(0, Math.min(ChunkMap.CHUNKSIZE, inode.length - chunkStart));
+                if (oldSize > 0 && (from > 0 || to < oldSize) && !loadChunk(inode, map, chunk)) break;
+
+                map.cachedChunk = -1; // Until the new contents are stored
+                if (from > oldSize) Arrays.fill(map.cached, oldSize, from, (byte) 0);
+                System.arraycopy(buffer, bytesWritten, map.cached, from, to - from);
+                if (!storeChunk(inode, map, chunk, Math.max(oldSize, to), packed)) break;
+                map.cachedChunk = chunk;
+
+                bytesWritten += to - from;
+                ftEnt.seekPtr += to - from;
+                if (ftEnt.seekPtr > inode.length) {
+                    inode.length = ftEnt.seekPtr;
+                }
             }
+            if (bytesWritten > 0) {
+                byte[] mapBlock = new byte[BlockIO.blockSize()];
+                map.toBytes(mapBlock);
+                BlockIO.write(inode.findTargetBlock(0), mapBlock);
+                inode.toDisk(ftEnt.iNumber);
+            }
+            return bytesWritten;
+        }
+    }
 
-            return bytesWritten; // Return the number of bytes written
+    // Returns a compressed file's chunk map, read from the file's first block the first time; caller holds the inode.
+    private ChunkMap chunkMap(Inode inode) {
+        if (inode.chunkMap == null) {
+            if (inode.blockCount() == 0) {
+                inode.chunkMap = new ChunkMap(BlockIO.blockSize()); // The first write allocates its block
+            } else {
+                byte[] mapBlock = new byte[BlockIO.blockSize()];
+                BlockIO.read(inode.findTargetBlock(0), mapBlock);
+                inode.chunkMap = new ChunkMap(mapBlock, (inode.length + ChunkMap.CHUNKSIZE - 1) / ChunkMap.CHUNKSIZE);
+            }
+        }
+        return inode.chunkMap;
+    }
+
+    // Decompresses chunk into map.cached unless it is there already; caller holds the inode.
+    // Returns false if the chunk's blocks do not hold valid compressed data.
+    private boolean loadChunk(Inode inode, ChunkMap map, int chunk) {
+        if (map.cachedChunk == chunk) return true;
+        map.cachedChunk = -1;
+        int size = Math.min(ChunkMap.CHUNKSIZE, inode.length - chunk * ChunkMap.CHUNKSIZE);
+        int offset = map.offset(chunk);
+        int length = map.length(chunk);
+        if (length == size) { // Stored as it is
+            readBlocks(inode, map.cached, offset, offset + length);
+        } else {
+            byte[] packed = new byte[length];
+            readBlocks(inode, packed, offset, offset + length);
+            if (Lz4.decompress(packed, length, map.cached) != size) return false;
+        }
+        map.cachedChunk = chunk;
+        return true;
+    }
+
+    // Compresses the first size bytes of map.cached and writes them out as chunk, where ChunkMap.place puts it: in
+    // the first gap between the other chunks that holds it, its own old place included, else after the last chunk.
+    // Returns false if the disk or the extent table is full.
+    private boolean storeChunk(Inode inode, ChunkMap map, int chunk, int size, byte[] packed) {
+        byte[] data = packed;
+        int length = Lz4.compress(map.cached, size, packed);
+        if (length >= size) { // Did not compress: store it as it is
+            data = map.cached;
+            length = size;
+        }
+        int offset = map.place(chunk, length);
+        if (!writeBlocks(inode, data, offset, offset + length)) return false;
+        map.set(chunk, offset, length);
+        return true;
+    }
+
+    // Reads the bytes between start and end of the file's blocks, counted from its first block, into buffer from
+    // index 0, as one request. The blocks must exist.
+    private void readBlocks(Inode inode, byte[] buffer, int start, int end) {
+        int blockSize = BlockIO.blockSize();
+        int firstIndex = start / blockSize;
+        int blocks = (end - 1) / blockSize - firstIndex + 1;
+        int[] blockNumbers = new int[blocks];
+        byte[][] blockData = new byte[blocks][];
+        for (int i = 0; i < blocks; i++) {
+            blockNumbers[i] = inode.findTargetBlock((firstIndex + i) * blockSize);
+            blockData[i] = BufferPool.take();
+        }
+        BlockIO.readv(blockNumbers, blockData);
+        for (int i = 0; i < blocks; i++) {
+            copyBlock(blockData[i], firstIndex + i, buffer, start, end);
+            BufferPool.give(blockData[i]);
+        }
+    }
+
+    // Writes buffer[0, end - start) to the bytes between start and end of the file's blocks, counted from its first
+    // block, as one request, allocating blocks up to end first. Returns false if the disk or the extent table is full.
+    private boolean writeBlocks(Inode inode, byte[] buffer, int start, int end) {
+        int blockSize = BlockIO.blockSize();
+        int firstIndex = start / blockSize;
+        int lastIndex = (end - 1) / blockSize;
+        int allocated = inode.blockCount();
+        while (inode.blockCount() <= lastIndex) {
+            if (!allocateBlocks(inode, lastIndex + 1 - inode.blockCount(), false)) return false;
+        }
+        BlockRange range = BlockIO.range(lastIndex - firstIndex + 1);
+        for (int blockIndex = firstIndex; blockIndex <= lastIndex; blockIndex++) {
+            range.blocks[range.count++] = inode.findTargetBlock(blockIndex * blockSize);
+        }
+        if (allocated <= lastIndex) {
+            range.freshFrom = Math.max(0, allocated - firstIndex); // Allocated just now, nothing to read back
+        }
+        writeStaged(range, buffer, start, end);
+        return true;
+    }
+
+    // Writes the file's write-behind data and its inode to disk. A SYNC afterwards makes them durable.
+    void fsync(FileTableEntry ftEnt) {
+        synchronized(ftEnt.inode) {
+            flushInode(ftEnt.iNumber, ftEnt.inode);
         }
     }
 
     //implement
-    // Retrieves a free disk block from the superblock. Returns the block number or -1 if none are available.
-    private short findFreeBlock() {
-        int freeBlock = superblock.getFreeBlock(); // Attempt to get a free block from the superblock
+    // Retrieves the free disk block nearest to block from the superblock. Returns the block number or -1 if none are available.
+    private short findFreeBlock(int block) {
+        int freeBlock = superblock.getFreeBlockNear(block); // Attempt to get a free block from the superblock
         if (freeBlock == -1) {
             return -1; // Return -1 if no free block is available
         } else {
@@ -201,39 +590,224 @@ public class FileSystem {
         }
     }
 
+    // Chooses contiguous (extent) allocation or the old one-block-at-a-time, lowest-free-block allocation.
+    void setContiguousAllocation(boolean contiguous) {
+        this.contiguous = contiguous;
+    }
+
     //implement
-    // Allocates and registers a target block for an inode based on the seek pointer. Handles direct and indirect blocks.
-    // Returns true if successful, false otherwise (e.g., block already allocated or failure to allocate indirect block).
-    private boolean registerTargetBlock(FileTableEntry ftEnt, int seekPtr, short blockNumber) {
-        int blockIndex = seekPtr / Disk.blockSize; // Calculate block index from seek pointer
-
-        if (blockIndex < Inode.directSize) { // Direct block allocation
-            if (ftEnt.inode.direct[blockIndex] != -1) return false; // Block already allocated
-            ftEnt.inode.direct[blockIndex] = blockNumber; // Register direct block
-        } else { // Indirect block allocation
-            if (ftEnt.inode.indirect == -1) { // No indirect block, need allocation
-                short indirectBlock = this.findFreeBlock();
-                if (indirectBlock == -1) return false;
-
-                ftEnt.inode.indirect = indirectBlock;
-                byte[] data = new byte[Disk.blockSize];
-                for (int i = 0; i < data.length; i += 2) {
-                    SysLib.short2bytes((short) - 1, data, i); // Initialize indirect block pointers
+    // Allocates up to want blocks at the end of the file and registers them with its inode as one or more extents.
+    // The run is placed right after the file's last block when that space is free, so sequential files stay contiguous.
+    // Only a write-behind flush holds reservations (reserved = true); any other caller leaves the reserved blocks
+    // alone, and while there are any, two more: the spare a flush keeps for an extent block, and one for its own.
+    // Returns true if at least one block was added, false if the disk or the file's extent table is full.
+    private boolean allocateBlocks(Inode inode, int want, boolean reserved) {
+        if (reserved) return allocateRun(inode, want);
+        synchronized(dirtyInodes) { // No reservation can be made between counting the free blocks and taking them
+            int available = superblock.freeBlockCount() - reservedBlocks;
+            if (reservedBlocks > 0) available -= 2;
+            if (available <= 0) return false;
+            return allocateRun(inode, Math.min(want, available));
+        }
+    }
+
+    private boolean allocateRun(Inode inode, int want) {
+        if (!contiguous) want = 1;
+        int goal = contiguous && inode.lastBlock() >= 0 ? inode.lastBlock() + 1 : superblock.freeList;
+
+        int[] extent = superblock.getFreeExtent(goal, want);
+        if (extent == null) return false;
+
+        if (inode.needsExtentBlock(extent[0])) { // Spilling past the inline extents
+            short extentBlock = findFreeBlock(extent[0]); // Next to the data it maps
+            if (extentBlock == -1) {
+                superblock.returnExtent(extent[0], extent[1]);
+                return false;
+            }
+            inode.setExtentBlock(extentBlock); // Written out with the inode
+        }
+
+        // Register the run in the inode's in-memory extents; they are written out with the inode
+        if (!inode.registerExtent(extent[0], extent[1])) {
+            superblock.returnExtent(extent[0], extent[1]);
+            return false;
+        }
+        return true;
+    }
+
+    // Writes the bytes between file offsets start and end to range's blocks through pooled staging buffers, as one
+    // request. Only a partial write into a block that already holds file data needs its old contents, which can only
+    // be the first and the last block. A whole-block overwrite replaces every byte, and a block allocated by this
+    // call holds nothing of this file yet, so it starts zeroed.
+    private void writeStaged(BlockRange range, byte[] buffer, int start, int end) {
+        int blockSize = BlockIO.blockSize();
+        int blocks = range.count;
+        byte[][] blockData = new byte[blocks][];
+        int[] readNumbers = new int[2];
+        byte[][] readData = new byte[2][];
+        int reads = 0;
+        for (int i = 0; i < blocks; i++) {
+            blockData[i] = BufferPool.take();
+            int from = i == 0 ? start % blockSize : 0;
+            int to = i == blocks - 1 ? (end - 1) % blockSize + 1 : blockSize;
+            if (from == 0 && to == blockSize) continue; // Whole-block overwrite
+            if (i >= range.freshFrom) {
+                Arrays.fill(blockData[i], (byte) 0);
+            } else {
+                readNumbers[reads] = range.blocks[i];
+                readData[reads++] = blockData[i];
+            }
+        }
+        if (reads > 0) {
+            BlockIO.readv(Arrays.copyOf(readNumbers, reads), Arrays.copyOf(readData, reads)); // Read existing block data
+        }
+
+        // Write buffer data to block data
+        int bytesWritten = 0;
+        for (int i = 0; start + bytesWritten < end; i++) {
+            int dataOffset = (start + bytesWritten) % blockSize;
+            int writeSize = Math.min(blockSize - dataOffset, end - start - bytesWritten);
+            System.arraycopy(buffer, bytesWritten, blockData[i], dataOffset, writeSize);
+            bytesWritten += writeSize;
+        }
+        BlockIO.writev(Arrays.copyOf(range.blocks, blocks), blockData); // Write the blocks back to disk
+        for (int i = 0; i < blocks; i++) {
+            BufferPool.give(blockData[i]);
+        }
+    }
+
+    // Write-behind version of write: copies the data into whole-block images held by the inode and returns.
+    // Only a partial write into a block already on disk reads it; blocks past the file's allocated end get no
+    // disk block yet, just a reservation, so a flush can never run out of space for data it has accepted.
+    private int bufferWrite(FileTableEntry ftEnt, byte[] buffer) {
+        Inode inode = ftEnt.inode;
+        int blockSize = BlockIO.blockSize();
+        int bytesWritten = 0;
+
+        synchronized(inode) {
+            int allocated = inode.blockCount();
+            while (bytesWritten < buffer.length) {
+                int blockIndex = ftEnt.seekPtr / blockSize;
+                int dataOffset = ftEnt.seekPtr % blockSize;
+                int writeSize = Math.min(blockSize - dataOffset, buffer.length - bytesWritten);
+
+                byte[] blockData = inode.dirtyBlocks.get(blockIndex);
+                if (blockData == null) {
+                    if (blockIndex >= allocated && !reserveBlock()) {
+                        break; // Disk full: stop where the flush would have nowhere to put the data
+                    }
+                    blockData = new byte[blockSize];
+                    if (blockIndex < allocated && writeSize < blockSize) {
+                        BlockIO.read(inode.findTargetBlock(ftEnt.seekPtr), blockData); // Read existing block data
+                    }
+                    inode.dirtyBlocks.put(blockIndex, blockData);
+                    addDirty(ftEnt.iNumber, inode);
                 }
-                SysLib.rawwrite(indirectBlock, data); // Initialize indirect block on disk
+
+                // Write buffer data to the held block
+                System.arraycopy(buffer, bytesWritten, blockData, dataOffset, writeSize);
+                ftEnt.seekPtr += writeSize;
+                bytesWritten += writeSize;
             }
 
-            byte[] indirectData = new byte[Disk.blockSize];
-            SysLib.rawread(ftEnt.inode.indirect, indirectData); // Read current indirect block
+            // The new length reaches the disk with the data
+            if (ftEnt.seekPtr > inode.length) {
+                inode.length = ftEnt.seekPtr;
+            }
+            if (dirtyBlockCount() > MAX_DIRTY_BLOCKS) {
+                flushInode(ftEnt.iNumber, inode); // Memory pressure: the writer pays for its own data
+            }
+        }
+        return bytesWritten;
+    }
+
+    // Sets aside one free block for a write-behind block that has none yet.
+    private boolean reserveBlock() {
+        synchronized(dirtyInodes) {
+            // keep one block spare for an extent block the flush may need
+            if (superblock.freeBlockCount() - reservedBlocks <= 1) return false;
+            reservedBlocks++;
+            return true;
+        }
+    }
 
-            int indirectIndex = blockIndex - Inode.directSize; // Calculate index within the indirect block
-            if (SysLib.bytes2short(indirectData, indirectIndex * 2) != -1) return false; // Check if target block is already allocated
+    // Counts one more write-behind block of this inode, registering the inode if it had none.
+    private void addDirty(short iNumber, Inode inode) {
+        synchronized(dirtyInodes) {
+            if (!dirtyInodes.containsKey(iNumber)) {
+                dirtyInodes.put(iNumber, inode);
+                inode.dirtySince = System.currentTimeMillis();
+            }
+            dirtyBlocks++;
+        }
+    }
 
-            SysLib.short2bytes(blockNumber, indirectData, indirectIndex * 2); // Register new block in indirect block
-            SysLib.rawwrite(ftEnt.inode.indirect, indirectData); // Update indirect block on disk
+    private int dirtyBlockCount() {
+        synchronized(dirtyInodes) {
+            return dirtyBlocks;
         }
+    }
 
-        return true;
+    // Drops an inode's write-behind blocks and gives back their reservations; caller holds the inode.
+    private void clearDirty(short iNumber, Inode inode, int unallocated) {
+        synchronized(dirtyInodes) {
+            dirtyBlocks -= inode.dirtyBlocks.size();
+            reservedBlocks -= unallocated;
+            dirtyInodes.remove(iNumber);
+        }
+        inode.dirtyBlocks.clear();
+    }
+
+    // Writes an inode's write-behind blocks to disk; caller holds the inode. The blocks past the file's allocated
+    // end are allocated now, all at once, so appends that arrived in many small writes land in one contiguous run.
+    private void flushInode(short iNumber, Inode inode) {
+        if (inode.dirtyBlocks.isEmpty()) return;
+
+        int allocated = inode.blockCount();
+        int unallocated = inode.dirtyBlocks.tailMap(allocated).size(); // The blocks holding reservations
+        int needed = inode.dirtyBlocks.lastKey() + 1;
+        while (inode.blockCount() < needed) {
+            if (!allocateBlocks(inode, needed - inode.blockCount(), true)) {
+                break; // Only when the extent table is full; the space itself was reserved
+            }
+        }
+        if (inode.blockCount() < needed) { // The tail that found no block is lost
+            inode.length = Math.min(inode.length, inode.blockCount() * BlockIO.blockSize());
+        }
+
+        int[] blockNumbers = new int[inode.dirtyBlocks.size()];
+        byte[][] blockData = new byte[blockNumbers.length][];
+        int blocks = 0;
+        for (Map.Entry<Integer, byte[]> dirty : inode.dirtyBlocks.entrySet()) {
+            int blockNumber = inode.findTargetBlock(dirty.getKey() * BlockIO.blockSize());
+            if (blockNumber == -1) break;
+            blockNumbers[blocks] = blockNumber;
+            blockData[blocks++] = dirty.getValue();
+        }
+        if (blocks > 0) {
+            BlockIO.writev(Arrays.copyOf(blockNumbers, blocks), Arrays.copyOf(blockData, blocks));
+        }
+        clearDirty(iNumber, inode, unallocated);
+        inode.toDisk(iNumber); // New length and extents
+    }
+
+    // Flushes every inode whose write-behind data is at least minAge ms old; 0 flushes them all.
+    void flushDirty(long minAge) {
+        ArrayList<Short> iNumbers = new ArrayList<>();
+        ArrayList<Inode> inodes = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized(dirtyInodes) {
+            for (Map.Entry<Short, Inode> dirty : dirtyInodes.entrySet()) {
+                if (now - dirty.getValue().dirtySince < minAge) break; // The rest are younger
+                iNumbers.add(dirty.getKey());
+                inodes.add(dirty.getValue());
+            }
+        }
+        for (int i = 0; i < inodes.size(); i++) {
+            synchronized(inodes.get(i)) {
+                flushInode(iNumbers.get(i), inodes.get(i));
+            }
+        }
     }
 
     //implement
@@ -242,30 +816,27 @@ public class FileSystem {
             return false;
         }
 
-        // Deallocate all direct blocks
-        for (int i = 0; i < ftEnt.inode.direct.length; i++) {
-            if (ftEnt.inode.direct[i] != -1) { // Check if block is allocated
-                superblock.returnBlock(ftEnt.inode.direct[i]); // Return block to superblock
-                ftEnt.inode.direct[i] = -1; // Mark block as deallocated
-            }
+        // Write-behind data of a deleted file never needs to reach the disk
+        synchronized(ftEnt.inode) {
+            int unallocated = ftEnt.inode.dirtyBlocks.tailMap(ftEnt.inode.blockCount()).size();
+            clearDirty(ftEnt.iNumber, ftEnt.inode, unallocated);
         }
 
-        // Deallocate indirect blocks, if any
-        if (ftEnt.inode.indirect != -1) {
-            byte[] dataBuffer = new byte[Disk.blockSize]; // Buffer to read indirect block data
-            SysLib.rawread(ftEnt.inode.indirect, dataBuffer); // Read indirect block
-
-            int offset = 0;
-            short block = SysLib.bytes2short(dataBuffer, offset);
-            while (block != -1 && offset < Disk.blockSize) {
-                superblock.returnBlock(block); // Return block to superblock
-                offset += 2;
-                block = SysLib.bytes2short(dataBuffer, offset); // Read next block number
-            }
+        // Deallocate every extent
+        short[] extents = ftEnt.inode.getExtents();
+        for (int i = 0; i < extents.length; i += 2) {
+            superblock.returnExtent(extents[i], extents[i + 1]); // Return the run to superblock
+        }
 
-            superblock.returnBlock(ftEnt.inode.indirect); // Return the indirect block itself
-            ftEnt.inode.indirect = -1; // Mark indirect block as deallocated
+        // Deallocate the extent block, if any
+        if (ftEnt.inode.extentBlock != -1) {
+            superblock.returnBlock(ftEnt.inode.extentBlock);
         }
+        ftEnt.inode.clearExtents(); // Mark every block as deallocated
+        ftEnt.inode.length = 0;
+        ftEnt.inode.compressed = false; // The inode goes back to being a plain file
+        ftEnt.inode.chunkMap = null;
+        ftEnt.seekPtr = 0;
 
         ftEnt.inode.toDisk(ftEnt.iNumber); // Save inode changes to disk
 
@@ -275,9 +846,160 @@ public class FileSystem {
     boolean delete(String filename) {
         FileTableEntry ftEnt = open(filename, "w");
         short iNumber = ftEnt.iNumber;
+        // A file another entry still has open keeps its blocks and its inode number
+        if (ftEnt.inode.count != 1) {
+            close(ftEnt);
+            return false;
+        }
+        deallocAllBlocks(ftEnt);
         return close(ftEnt) && directory.ifree(iNumber);
     }
 
+    // Detects sequential reading and keeps the blocks ahead of the reader on their way into the cache.
+    // A read that starts where the last one ended doubles the window up to maxReadAhead; anything else drops it to 0.
+    // Only blocks past raEnd are requested, so each block is handed to read-ahead once per sequential run.
+    private void readAhead(FileTableEntry ftEnt, int startPtr, int lastIndex) {
+        if (maxReadAhead == 0) return;
+        if (startPtr != ftEnt.raOffset) {
+            ftEnt.raWindow = 0; // Random access: stop reading ahead
+            ftEnt.raEnd = 0;
+        } else {
+            ftEnt.raWindow = Math.min(maxReadAhead, Math.max(MIN_READAHEAD, ftEnt.raWindow * 2));
+        }
+        ftEnt.raOffset = ftEnt.seekPtr;
+        if (ftEnt.raWindow == 0) return;
+
+        int from = Math.max(ftEnt.raEnd, lastIndex + 1);
+        int to;
+        int[] blockNumbers;
+        synchronized(ftEnt.inode) { // A writer through another entry may be adding extents or flushing meanwhile
+            to = Math.min(lastIndex + ftEnt.raWindow, (fsize(ftEnt) - 1) / BlockIO.blockSize());
+            if (from > to) return;
+            blockNumbers = new int[to - from + 1];
+            for (int i = 0; i < blockNumbers.length; i++) {
+                blockNumbers[i] = ftEnt.inode.findTargetBlock((from + i) * BlockIO.blockSize());
+                if (blockNumbers[i] < 0) { // Write-behind data with no block yet: read ahead up to it
+                    if (i == 0) return;
+                    to = from + i - 1;
+                    blockNumbers = Arrays.copyOf(blockNumbers, i);
+                    break;
+                }
+            }
+        }
+        if (readAhead.request(blockNumbers)) {
+            ftEnt.raEnd = to + 1;
+        }
+    }
+
+    // Maps length bytes of the file from offset into memory and returns a ByteBuffer over them, so random access
+    // costs a memory access instead of a seek and a read. This is copy-in/copy-out, not a shared mapping: Java has
+    // no page faults, so the bytes are copied into the view when the region is mapped, and the view only sees other
+    // writes to the file at msync. The region must lie within the file. A file open for "w+" gets a writable view
+    // whose changes reach the file on msync, munmap or close; "r" gets a read-only view.
+    // Returns null if the mode allows no mapping or the region is out of range.
+    ByteBuffer mmap(FileTableEntry ftEnt, int offset, int length) {
+        boolean writable = ftEnt.mode.equals("w+");
+        if (!writable && !ftEnt.mode.equals("r")) return null; // A mapping must be readable
+        synchronized(ftEnt) {
+            if (offset < 0 || length <= 0 || (long) offset + length > fsize(ftEnt)) return null;
+
+            MappedRegion region = new MappedRegion(ftEnt, offset, length, writable);
+            int seekPtr = ftEnt.seekPtr;
+            ftEnt.seekPtr = offset;
+            read(ftEnt, region.data);
+            ftEnt.seekPtr = seekPtr; // The mapping leaves the seek pointer alone
+            ftEnt.raOffset = -1; // ...but does end a sequential run, like a seek
+            if (writable) System.arraycopy(region.data, 0, region.clean, 0, length);
+
+            ftEnt.mappings.add(region);
+            synchronized(mappings) {
+                mappings.put(region.view, region);
+            }
+            return region.view;
+        }
+    }
+
+    // Writes the blocks of a mapped region that changed since it was mapped or last synced back to its file.
+    // Returns the number of bytes written back, or -1 if view did not come from mmap.
+    int msync(ByteBuffer view) {
+        MappedRegion region;
+        synchronized(mappings) {
+            region = mappings.get(view);
+        }
+        if (region == null) return -1;
+        synchronized(region.ftEnt) {
+            return syncRegion(region);
+        }
+    }
+
+    // Writes back a mapped region like msync and ends the mapping; the view is then the program's own copy.
+    // Returns the number of bytes written back, or -1 if view did not come from mmap or was already unmapped.
+    int munmap(ByteBuffer view) {
+        MappedRegion region;
+        synchronized(mappings) {
+            region = mappings.remove(view);
+        }
+        if (region == null) return -1;
+        synchronized(region.ftEnt) {
+            region.ftEnt.mappings.remove(region);
+            return syncRegion(region);
+        }
+    }
+
+    // Writes back the program's changes to a mapped region; caller holds the file table entry. The file may have
+    // been written since the region was copied in, through this entry or another, so the region's bytes are read
+    // again first: every byte the program left alone (data equals clean) takes the file's current value, and only
+    // the bytes it changed are its own. Then each file block's share of the region that holds a change is written
+    // back whole, which writes no stale byte. Where both changed the same byte, the program's write comes last.
+    private int syncRegion(MappedRegion region) {
+        if (region.clean == null) return 0; // Read-only
+        FileTableEntry ftEnt = region.ftEnt;
+        byte[] data = region.data;
+        int seekPtr = ftEnt.seekPtr;
+        int written = 0;
+        int blockSize = BlockIO.blockSize();
+        synchronized(ftEnt.inode) { // No write through another entry between reading the file and writing it
+            byte[] current = new byte[data.length];
+            ftEnt.seekPtr = region.offset;
+            read(ftEnt, current);
+            int start = 0;
+            while (start < data.length) {
+                // The part of the region inside one file block
+                int end = Math.min(data.length, start + blockSize - (region.offset + start) % blockSize);
+                boolean changed = false;
+                for (int i = start; i < end; i++) {
+                    if (data[i] != region.clean[i]) {
+                        changed = true;
+                    } else {
+                        data[i] = current[i];
+                    }
+                }
+                if (changed) {
+                    ftEnt.seekPtr = region.offset + start;
+                    written += write(ftEnt, Arrays.copyOfRange(data, start, end));
+                }
+                start = end;
+            }
+            System.arraycopy(data, 0, region.clean, 0, data.length);
+        }
+        ftEnt.seekPtr = seekPtr;
+        ftEnt.raOffset = -1; // Not part of a sequential run
+        return written;
+    }
+
+    // Writes back and forgets every region mapped through this entry; called when the entry is closed for good.
+    private void unmapAll(FileTableEntry ftEnt) {
+        synchronized(ftEnt) {
+            for (MappedRegion region : ftEnt.mappings) {
+                syncRegion(region);
+                synchronized(mappings) {
+                    mappings.remove(region.view);
+                }
+            }
+            ftEnt.mappings.clear();
+        }
+    }
+
     private final int SEEK_SET = 0;
     private final int SEEK_CUR = 1;
     private final int SEEK_END = 2;
@@ -285,6 +1007,10 @@ public class FileSystem {
     // Adjusts the file's seek pointer based on the offset and whence parameters.
     int seek(FileTableEntry fileEntry, int offset, int whence) {
         synchronized(fileEntry) {
+            // A seek ends any sequential run
+            fileEntry.raOffset = -1;
+            fileEntry.raWindow = 0;
+            fileEntry.raEnd = 0;
             int fileSize = this.fsize(fileEntry);
             switch (whence) {
                 case 0:
@@ -35,9 +35,11 @@ public class FileTable {
         // Get inode number from directory
         iNumber = dir.namei(fname);
 
-        // If file exists, retrieve its inode
+        // If file exists, share the in-memory inode of any entry that already has it open,
+        // so every entry sees the same length, pointers and cached block map
         if (iNumber >= 0) {
-            inode = new Inode(iNumber);
+            inode = findOpenInode(iNumber);
+            if (inode == null) inode = new Inode(iNumber);
         } else if (!mode.equals("r")) { // If file doesn't exist and mode is not read, create new file
             iNumber = dir.ialloc(fname); // Allocate inode for new file
             if (iNumber >= 0) {
@@ -60,6 +62,14 @@ public class FileTable {
 
 
 
+    // Returns the inode already loaded by an open entry for iNumber, or null if the file is not open.
+    private Inode findOpenInode(short iNumber) {
+        for (FileTableEntry e : table) {
+            if (e.iNumber == iNumber) return e.inode;
+        }
+        return null;
+    }
+
     public synchronized boolean ffree(FileTableEntry e) {
         // receive a file table entry
         // free the file table entry corresponding to this index
@@ -11,18 +11,27 @@
  * keep track of everything.
  */
 
+import java.util.ArrayList;
+
 public class FileTableEntry {
     public int seekPtr; //    a file seek pointer
     public final Inode inode; //    a reference to an inode
     public final short iNumber; //    this inode number
     public int count; //    a count to maintain #threads sharing this
     public final String mode; //    "r", "w", "w+", or "a"
+    public int raOffset; //    seek pointer a sequential read would start at
+    public int raWindow; //    read-ahead window in blocks, 0 until reads look sequential
+    public int raEnd; //    first block index not yet handed to read-ahead
+    public final ArrayList<MappedRegion> mappings = new ArrayList<>(); //    mmap'ed regions, written back on close
     FileTableEntry(Inode i, short inumber, String m) {
         seekPtr = 0; // the seek pointer is set to the file top.
         inode = i;
         iNumber = inumber;
         count = 1; // at least one thread is using this entry.
         mode = m; // once file access mode is set, it never changes.
+        raOffset = 0; // a read from the file top counts as sequential
+        raWindow = 0;
+        raEnd = 0;
 
         if (mode.compareTo("a") == 0)
             seekPtr = inode.length;
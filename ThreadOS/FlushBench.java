@@ -0,0 +1,76 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * FlushBench measures what the cache flusher saves a thread that updates a file while reading another. Both files are
+ * four times the size of the cache. Each round overwrites one block of the first file at random, reads one block of the
+ * second at random, which usually misses and evicts a page, then pauses for a moment, as a program would while working
+ * on what it read. It prints the time spent in the calls per round, how many evictions had to write back a dirty page
+ * first, how many pages the flusher wrote back, and how long the final sync took. Boot once as usual and once with
+ * -DthreadOS.cache.flusher=off to compare.
+ * Usage: l FlushBench [rounds] [pause ms]
+ */
+
+import java.util.Random;
+
+class FlushBench extends Thread {
+    private final static int DEFAULTROUNDS = 150;
+    private final static int DEFAULTPAUSE = 60;
+    private final int rounds;
+    private final int pause;
+
+    public FlushBench(String args[]) {
+        rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTROUNDS;
+        pause = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULTPAUSE;
+    }
+
+    public FlushBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.format(48);
+        int blockSize = Disk.blockSize;
+        int fileBlocks = 40; // four times the kernel's 10-page cache
+        byte[] block = new byte[blockSize];
+        for (String name : new String[] { "updated", "read" }) {
+            int fd = SysLib.open(name, "w");
+            for (int b = 0; b < fileBlocks; b++) {
+                SysLib.write(fd, block);
+            }
+            SysLib.close(fd);
+        }
+        SysLib.csync();
+        SysLib.cout("disk model " + SysLib.diskmodel() + ", " + rounds + " rounds, " + pause + " ms pauses\n");
+
+        int updated = SysLib.open("updated", "w+");
+        int read = SysLib.open("read", "r");
+        Random random = new Random(430);
+        SysLib.iostat(new int[12], true);
+        long busy = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            SysLib.seek(updated, random.nextInt(fileBlocks) * blockSize, 0);
+            block[0] = (byte) i;
+            SysLib.write(updated, block);
+            SysLib.seek(read, random.nextInt(fileBlocks) * blockSize, 0);
+            SysLib.read(read, block);
+            busy += System.nanoTime() - start;
+            SysLib.sleep(pause);
+        }
+        long start = System.nanoTime();
+        SysLib.csync();
+        long sync = System.nanoTime() - start;
+        int[] counts = new int[12];
+        SysLib.iostat(counts, false);
+        SysLib.close(updated);
+        SysLib.close(read);
+
+        SysLib.cout(busy / 1000 / rounds + " us in calls per round, " + counts[10] + " dirty evictions, " + counts[11]
+                    + " pages flushed, final sync " + sync / 1000 + " us\n");
+        SysLib.exit();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The Flusher class is a background thread that writes dirty cache pages back before anything has to wait for them.
+ * Without it a dirty page reaches the disk only when it is evicted, which makes the thread that missed wait for the
+ * write as well as its own read, or when a sync writes everything at once. The flusher wakes when a cache shard has
+ * more than highRatio percent of its pages dirty, and otherwise every half maxAge ms. Each time, it writes back the
+ * pages dirty for longer than maxAge, then the longest dirty until at most half highRatio percent stay dirty, as one
+ * request in block order (see Cache.clean). Evictions then mostly find clean victims, and syncs find little to do.
+ * Its runs are counted in IoStats, and the pages it wrote in IOSTAT.
+ */
+
+class Flusher extends Thread {
+    public final static int DEFAULTRATIO = 50; // % of a shard's pages dirty that wakes the flusher
+    public final static long DEFAULTAGE = 1000; // ms a page may stay dirty
+
+    final int highRatio;
+    final long maxAge;
+    private final Cache cache;
+    private boolean woken = false; // a shard crossed the high watermark
+
+    Flusher(Cache cache, int highRatio, long maxAge) {
+        this.cache = cache;
+        this.highRatio = Math.max(1, Math.min(100, highRatio));
+        this.maxAge = Math.max(1, maxAge);
+        setDaemon(true); // never keeps ThreadOS from shutting down
+    }
+
+    // Called by the cache when a shard is over the high watermark.
+    synchronized void wake() {
+        woken = true;
+        notify();
+    }
+
+    // Sleeps until woken or half maxAge has passed; returns whether it was woken.
+    private synchronized boolean await() throws InterruptedException {
+        if (!woken) wait(maxAge / 2);
+        boolean wasWoken = woken;
+        woken = false;
+        return wasWoken;
+    }
+
+    public void run() {
+        while (true) {
+            boolean overWatermark;
+            try {
+                overWatermark = await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long start = System.nanoTime();
+            int written = cache.clean(System.currentTimeMillis() - maxAge, highRatio / 2);
+            if (written > 0) IoStats.flushed(written, overWatermark, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * FragmentBench fragments the free space and then measures a sequential scan. It grows a set of small files
+ * round-robin, deletes every fourth one to leave holes all over the disk, writes one large file in Test5-sized
+ * chunks and reads it back front to back, printing the simulated seek distance of that read once the head sits
+ * on the file's first block. Compare the allocators by booting with -DthreadOS.fs.alloc=extent (default) and
+ * -DthreadOS.fs.alloc=block, together with -DthreadOS.fs.io=raw so cached inode write-backs stay out of the count.
+ * Usage: l FragmentBench [files]
+ */
+
+class FragmentBench extends Thread {
+    private final static int DEFAULTFILES = 32;
+    private final static int ROUNDS = 3; // appends per small file
+    private final static int APPEND = 512 * 4; // bytes per small-file append
+    private final static int CHUNK = 512 * 12; // bytes per large-file write
+    private final static int CHUNKS = 4;
+    private final int files;
+
+    public FragmentBench(String args[]) {
+        files = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTFILES;
+    }
+
+    public FragmentBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.format(48);
+
+        // Interleave the small files' blocks across the disk
+        byte[] append = new byte[APPEND];
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < files; i++) {
+                int fd = SysLib.open("frag" + i, "a");
+                SysLib.write(fd, append);
+                SysLib.close(fd);
+            }
+        }
+        // Punch holes by deleting every fourth file
+        for (int i = 0; i < files; i += 4) {
+            SysLib.delete("frag" + i);
+        }
+
+        byte[] chunk = new byte[CHUNK];
+        for (int i = 0; i < CHUNK; i++) chunk[i] = (byte) i;
+        int fd = SysLib.open("large", "w+");
+        for (int i = 0; i < CHUNKS; i++) {
+            SysLib.write(fd, chunk);
+        }
+        SysLib.close(fd);
+        SysLib.flush(); // start the scan from an empty cache
+
+        // Sequential scan, one block per read, measured from the file's first block on
+        int[] counts = new int[3];
+        byte[] block = new byte[512];
+        fd = SysLib.open("large", "r");
+        SysLib.read(fd, block);
+        SysLib.iostat(counts, true);
+        long start = System.currentTimeMillis();
+        int blocks = 1;
+        while (SysLib.read(fd, block) > 0) blocks++;
+        long elapsed = System.currentTimeMillis() - start;
+        SysLib.iostat(counts, true);
+        SysLib.close(fd);
+
+        SysLib.cout("sequential read of " + blocks + " blocks after fragmentation: " + counts[0]
+            + " block reads, " + counts[1] + " block writes, " + counts[2] + " tracks of seek, " + elapsed + " ms\n");
+        SysLib.exit();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The Histogram class summarizes a stream of non-negative values, such as latencies or seek distances, in
+ * power-of-two buckets: bucket 0 counts zeros and bucket b counts values from 2^(b-1) up to 2^b - 1. That keeps it a
+ * fixed handful of longs however many values it sees, at the price of percentiles that are only known to within a
+ * factor of two; they are reported as the top of their bucket. The count, mean and maximum are exact.
+ * It is not thread safe; IoStats guards its histograms.
+ */
+
+import java.util.Arrays;
+
+class Histogram {
+    private final static int BUCKETS = 64;
+
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    void record(long value) {
+        value = Math.max(0, value);
+        buckets[64 - Long.numberOfLeadingZeros(value)]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    void clear() {
+        Arrays.fill(buckets, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    // Returns a value at least as large as the given fraction of the values, and less than twice what it would be
+    // exactly; never more than the maximum.
+    long percentile(double fraction) {
+        long wanted = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += buckets[b];
+            if (seen >= wanted && seen > 0) {
+                return Math.min(max, b == 0 ? 0 : (1L << b) - 1);
+            }
+        }
+        return max;
+    }
+
+    // Returns e.g. "n=120 mean=412 p50<=511 p90<=1023 p99<=2047 max=1630", or "n=0".
+    public String toString() {
+        if (count == 0) return "n=0";
+        return "n=" + count + " mean=" + sum / count + " p50<=" + percentile(0.5) + " p90<=" + percentile(0.9)
+            + " p99<=" + percentile(0.99) + " max=" + max;
+    }
+}
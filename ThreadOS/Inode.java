@@ -8,167 +8,260 @@
  * The Inode class functions as the file's ID card within the file system. It holds all the important details: how big the 
  * file is, how often it's used, what permissions it has, and where to find its data on the disk. This class is the key to 
  * grabbing data blocks whenever you need them, getting more disk space for the file, and handling those extra structures 
- * that really big files need.
+ * that really big files need. A file's data is described by extents, runs of contiguous blocks given as (start, length):
+ * the first few live in the inode itself and the rest in one extent block. How many inodes fit in a block, and how
+ * many extents fit in the extent block, follow from the block size the disk was formatted with.
+ * A compressed file (see ChunkMap) is marked by a bit of the flag on disk; its length counts the file's bytes before
+ * compression, and its extents cover the compressed blocks.
  */
 
 
 
-import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.TreeMap;
 public class Inode {
     public final static int iNodeSize = 32; // fixed to 32 bytes
-    public final static int directSize = 11; // # direct pointers
+    public final static int inlineExtents = 5; // # extents stored in the inode itself
+    public final static int maxExtentLength = Short.MAX_VALUE; // # blocks one extent can cover
 
     public final static int NoError = 0;
     public final static int ErrorBlockRegistered = -1;
     public final static int ErrorPrecBlockUnused = -2;
     public final static int ErrorIndirectNull = -3;
 
+    private final static short COMPRESSED = 0x100; // flag bit on disk marking a compressed file
+    private final static Object inodeBlocks = new Object(); // held over toDisk's read-modify-write of a shared block
+
     public int length; // file size in bytes
     public short count; // # file-table entries pointing to this
     public short flag; // 0 = unused, 1 = used(r), 2 = used(!r), 
     // 3=unused(wreg), 4=used(r,wreq), 5= used(!r,wreg)
-    public short direct[] = new short[directSize]; // directo pointers
-    public short indirect; // an indirect pointer
+    public short extentCount; // # extents in use
+    public short extentBlock; // block holding the extents past the inline ones
+    public boolean compressed; // data is stored as compressed chunks
+    ChunkMap chunkMap; // a compressed file's chunk map once it has been read; guarded by the inode
+
+    // (start, length) pairs; the inline ones are decoded with the inode, the rest on first use
+    private short extents[] = new short[inlineExtents * 2]; // grows to hold the extent block's pairs
+    private boolean extentBlockLoaded = false; // extents[] holds the extent block's pairs too
+    private boolean extentBlockDirty = false; // extents[] differs from the extent block on disk
+
+    // Write-behind: whole block images written but not yet on disk, by block index within the file.
+    // Held in memory only; length already counts them. Guarded by synchronizing on the inode.
+    TreeMap<Integer, byte[]> dirtyBlocks = new TreeMap<>();
+    long dirtySince; // when the oldest of them was written
 
     Inode() { // a default constructor
         length = 0;
         count = 0;
         flag = 1;
-        for (int i = 0; i < directSize; i++)
-            direct[i] = -1;
-        indirect = -1;
+        extentCount = 0;
+        extentBlock = -1;
+        extentBlockLoaded = true; // nothing to load
+    }
+
+    // Returns the number of inodes one block holds.
+    static int inodesPerBlock() {
+        return BlockIO.blockSize() / iNodeSize;
+    }
+
+    // Returns the number of (start, length) pairs the extent block holds.
+    static int extentsPerBlock() {
+        return BlockIO.blockSize() / 4;
+    }
+
+    // Returns the most extents one file can have.
+    static int maxExtents() {
+        return inlineExtents + extentsPerBlock();
     }
 
     // making inode from disk
     Inode(short iNumber) {
-        int blkNumber = 1 + iNumber / 16; // inodes start from block#1
-        byte[] data = new byte[Disk.blockSize];
-        SysLib.rawread(blkNumber, data); // get the inode block
-        int offset = (iNumber % 16) * iNodeSize; // locate the inode top
+        int blkNumber = 1 + iNumber / inodesPerBlock(); // inodes start from block#1
+        byte[] data = BufferPool.take();
+        BlockIO.read(blkNumber, data); // get the inode block
+        int offset = (iNumber % inodesPerBlock()) * iNodeSize; // locate the inode top
 
         length = SysLib.bytes2int(data, offset); // retrieve all data members
         offset += 4; // from data
         count = SysLib.bytes2short(data, offset);
         offset += 2;
         flag = SysLib.bytes2short(data, offset);
+        compressed = (flag & COMPRESSED) != 0;
+        flag &= ~COMPRESSED;
         offset += 2;
-        for (int i = 0; i < directSize; i++) {
-            direct[i] = SysLib.bytes2short(data, offset);
+        for (int i = 0; i < inlineExtents * 2; i++) {
+            extents[i] = SysLib.bytes2short(data, offset);
             offset += 2;
         }
-        indirect = SysLib.bytes2short(data, offset);
+        extentBlock = SysLib.bytes2short(data, offset);
         offset += 2;
+        extentCount = SysLib.bytes2short(data, offset);
+        offset += 2;
+        extentBlockLoaded = extentBlock < 0;
+        BufferPool.give(data);
 
         /*
         System.out.println( "Inode[" + iNumber + "]: retrieved " +
         			" length = " + length +
         			" count = " + count +
         			" flag = " + flag +
-        			" direct[0] = " + direct[0] +
-        			" indirect = " + indirect );
+        			" extents = " + extentCount +
+        			" extentBlock = " + extentBlock );
         */
     }
     // you implement
     // Serializes and writes this inode to disk based on the provided inode number.
     public void toDisk(short iNumber) {
-        // Allocate a ByteBuffer for inode serialization
-        ByteBuffer buffer = ByteBuffer.allocate(iNodeSize);
-        // Populate the buffer with inode data: length, count, flag, direct pointers, and indirect pointer
-        buffer.putInt(length)
-            .putShort(count)
-            .putShort(flag);
-        for (int i = 0; i < directSize; i++) {
-            buffer.putShort(direct[i]);
-        }
-        buffer.putShort(indirect);
-        buffer.flip(); // Prepare buffer for reading
+        byte[] inodeBlock = BufferPool.take();
+        int blkNumber = 1 + iNumber / inodesPerBlock(); // Calculate block number where the inode should be stored
+        // Other inodes share the block, and the write-behind timer saves them from its own thread: without the lock,
+        // one thread's write could put back another's inode as it was before
+        synchronized (inodeBlocks) {
+            BlockIO.read(blkNumber, inodeBlock);
 
-        byte[] inodeBlock = new byte[Disk.blockSize];
-        int blkNumber = 1 + iNumber / 16; // Calculate block number where the inode should be stored
-        SysLib.rawread(blkNumber, inodeBlock);
+            // Serialize the inode in place: length, count, flag, inline extents, extent block and extent count
+            int offset = (iNumber % inodesPerBlock()) * iNodeSize; // Calculate the offset within the block for this inode
+            SysLib.int2bytes(length, inodeBlock, offset);
+            offset += 4;
+            SysLib.short2bytes(count, inodeBlock, offset);
+            offset += 2;
+            SysLib.short2bytes((short) (compressed ? flag | COMPRESSED : flag), inodeBlock, offset);
+            offset += 2;
+            for (int i = 0; i < inlineExtents * 2; i++) {
+                SysLib.short2bytes(extents[i], inodeBlock, offset);
+                offset += 2;
+            }
+            SysLib.short2bytes(extentBlock, inodeBlock, offset);
+            offset += 2;
+            SysLib.short2bytes(extentCount, inodeBlock, offset);
+            BlockIO.write(blkNumber, inodeBlock);
+        }
+        BufferPool.give(inodeBlock);
 
-        int blockOffset = (iNumber % 16) * iNodeSize; // Calculate the offset within the block for this inode
-        System.arraycopy(buffer.array(), 0, inodeBlock, blockOffset, iNodeSize);
-        SysLib.rawwrite(blkNumber, inodeBlock);
+        // Extents added past the inline ones since the last flush reach the extent block here
+        flushExtentBlock();
     }
 
 
     // you implement
     // Determines the block number that contains the data at the specified offset within the file.
     public int findTargetBlock(int offset) {
-        int block = offset / Disk.blockSize;
+        int block = offset / BlockIO.blockSize();
 
-        if (block < directSize) {
-            return direct[block];
-        }
-
-        if (indirect < 0) {
-            return -1;
+        // Walk the extents until the one covering this block index
+        for (int e = 0; e < extentCount; e++) {
+            if (e == inlineExtents) loadExtentBlock();
+            int extentLength = extents[e * 2 + 1];
+            if (block < extentLength) {
+                return extents[e * 2] + block;
+            }
+            block -= extentLength;
         }
 
-        byte[] data = new byte[Disk.blockSize];
-        SysLib.rawread(indirect, data);
-
-        // Adjust block index to be relative to the start of the indirect pointers
-        block -= directSize;
+        // The offset is past the last allocated block
+        return -1;
+    }
 
-        // Check if the adjusted block index is within the range a single block can index
-        if (block < Disk.blockSize / 2) {
-            // Convert 2 bytes from the buffer into a short to get the block number
-            return SysLib.bytes2short(data, block * 2);
+    // Returns the number of blocks allocated to this file.
+    public int blockCount() {
+        int blocks = 0;
+        for (int e = 0; e < extentCount; e++) {
+            if (e == inlineExtents) loadExtentBlock();
+            blocks += extents[e * 2 + 1];
         }
+        return blocks;
+    }
 
-        // If block index exceeds the capacity of the indirect block, return error
-        return -1;
+    // Returns the last block allocated to this file, or -1 if it has none.
+    public int lastBlock() {
+        if (extentCount == 0) return -1;
+        if (extentCount > inlineExtents) loadExtentBlock();
+        int e = extentCount - 1;
+        return extents[e * 2] + extents[e * 2 + 1] - 1;
+    }
+
+    // Returns true if appending a run starting at startBlock would need an extent block this inode does not have yet.
+    public boolean needsExtentBlock(int startBlock) {
+        return extentCount >= inlineExtents && extentBlock < 0 && lastBlock() + 1 != startBlock;
     }
 
+    // Installs a freshly allocated extent block. Nothing is read from the block; it is written out by the next toDisk.
+    public void setExtentBlock(short blockNumber) {
+        extentBlock = blockNumber;
+        growExtents();
+        extentBlockLoaded = true;
+        extentBlockDirty = true;
+    }
 
     // you implement
 
-    // Registers a new target block at the specified offset, ensuring correct allocation in both direct and indirect cases.
-    public boolean registerTargetBlock(int offset, int blockNumber) {
-        int blockIndex = offset / Disk.blockSize;
+    // Appends count blocks starting at startBlock to the end of the file.
+    // A run that continues the last extent just lengthens it; otherwise a new extent is opened.
+    // Returns false if the file has no room for another extent.
+    public boolean registerExtent(int startBlock, int count) {
+        if (extentCount >= inlineExtents) loadExtentBlock();
 
-        if (blockIndex < directSize) {
-            // If the block is already allocated or the previous block is unallocated, can't proceed
-            if (direct[blockIndex] >= 0 || (blockIndex > 0 && direct[blockIndex - 1] == -1)) {
-                return false;
-            }
-            // Allocate the block directly
-            direct[blockIndex] = (short) blockNumber;
-            return true;
+        int last = extentCount - 1;
+        if (last >= 0 && extents[last * 2] + extents[last * 2 + 1] == startBlock
+                && extents[last * 2 + 1] + count <= maxExtentLength) {
+            extents[last * 2 + 1] += (short) count; // contiguous with the last extent
+        } else {
+            if (extentCount == maxExtents()) return false; // No room for another extent
+            if (extentCount >= inlineExtents && extentBlock < 0) return false; // Caller must set the extent block first
+            extents[extentCount * 2] = (short) startBlock;
+            extents[extentCount * 2 + 1] = (short) count;
+            extentCount++;
         }
+        if (extentCount > inlineExtents) extentBlockDirty = true;
+        return true;
+    }
 
-        if (indirect < 0) {
-            // If no indirect block exists, this operation is not valid as it implies allocating non-contiguous space
-            return false;
-        }
+    // Returns a copy of this file's extents as (start, length) pairs.
+    public short[] getExtents() {
+        if (extentCount > inlineExtents) loadExtentBlock();
+        short[] copy = new short[extentCount * 2];
+        System.arraycopy(extents, 0, copy, 0, copy.length);
+        return copy;
+    }
 
-        byte[] data = new byte[Disk.blockSize];
-        SysLib.rawread(indirect, data);
+    // Forgets every extent and the extent block, leaving the file with no blocks.
+    // The caller is responsible for returning those blocks to the superblock.
+    public void clearExtents() {
+        extentCount = 0;
+        extentBlock = -1;
+        extentBlockLoaded = true;
+        extentBlockDirty = false;
+    }
 
-        // Calculate the index within the indirect block
-        blockIndex -= directSize;
-        if (blockIndex < Disk.blockSize / 2) { // Ensure the block index is within valid range
-            // Write the block number into the indirect block
-            SysLib.short2bytes((short) blockNumber, data, blockIndex * 2);
-            SysLib.rawwrite(indirect, data);
-            return true;
+    // Decodes the extent block into extents[] the first time it is needed.
+    private void loadExtentBlock() {
+        if (!extentBlockLoaded) {
+            growExtents();
+            byte[] data = BufferPool.take();
+            BlockIO.read(extentBlock, data);
+            for (int i = 0; i < extentsPerBlock() * 2; i++)
+                extents[inlineExtents * 2 + i] = SysLib.bytes2short(data, i * 2);
+            BufferPool.give(data);
+            extentBlockLoaded = true;
         }
+    }
 
-        // If the block index is out of range, the operation fails
-        return false;
+    // Makes room in extents[] for the extent block's pairs.
+    private void growExtents() {
+        if (extents.length < maxExtents() * 2) extents = Arrays.copyOf(extents, maxExtents() * 2);
     }
 
-    // Frees and returns the data of the indirect block if it exists, marking it as unallocated.
-    public byte[] freeIndirectBlocks() {
-        if (indirect >= 0) {
-            byte[] data = new byte[Disk.blockSize];
-            SysLib.rawread(indirect, data);
-            indirect = -1; // Mark the indirect block as free
-            return data; // Return the data from the freed indirect block
+    // Writes the extents past the inline ones back to the extent block if they changed since it was loaded.
+    private void flushExtentBlock() {
+        if (extentBlockDirty && extentBlock >= 0) {
+            byte[] data = BufferPool.take(); // every byte is overwritten below
+            for (int i = 0; i < extentsPerBlock() * 2; i++)
+                SysLib.short2bytes(extents[inlineExtents * 2 + i], data, i * 2);
+            BlockIO.write(extentBlock, data);
+            BufferPool.give(data);
         }
-        return null; // If no indirect block was allocated, return null
+        extentBlockDirty = false;
     }
 
 }
\ No newline at end of file
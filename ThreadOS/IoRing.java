@@ -0,0 +1,135 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The IoRing class is a thread's pair of queues for asynchronous file I/O, shared between the program and the kernel
+ * the way io_uring's rings are. The program prepares reads, writes and fsyncs on its submission queue without any
+ * system call, hands all of them to the kernel with one SysLib.iosubmit, and later reaps their results from the
+ * completion queue, again without a system call, or sleeps in SysLib.iowait until enough have finished. The kernel
+ * serves the operations on its own I/O threads (see AsyncIO), so one program can keep many of them in flight and
+ * the disk can order them. Operations finish in any order; userData tells them apart.
+ * The ring holds at most its capacity of operations at a time, counting prepared, in flight and unreaped ones, so
+ * a completion always has somewhere to go.
+ */
+
+class IoRing {
+    public final static int READ = 0;
+    public final static int WRITE = 1;
+    public final static int FSYNC = 2;
+
+    public final static int CURRENT = -1; // offset meaning the file's seek pointer, which the operation then moves
+
+    // One operation; after it completes, result holds what the synchronous call would have returned.
+    static class Op {
+        final IoRing ring;
+        final int opcode;
+        final int fd;
+        final byte[] buffer;
+        final int offset; // file offset, or CURRENT
+        final long userData; // the program's tag, handed back untouched
+        FileTableEntry ftEnt; // the open file, looked up by the kernel at submission
+        int result;
+
+        Op(IoRing ring, int opcode, int fd, byte[] buffer, int offset, long userData) {
+            this.ring = ring;
+            this.opcode = opcode;
+            this.fd = fd;
+            this.buffer = buffer;
+            this.offset = offset;
+            this.userData = userData;
+        }
+    }
+
+    private final Op[] submissions;
+    private int sqHead; // next operation iosubmit takes
+    private int sqCount; // prepared, not yet submitted
+    private final Op[] completions;
+    private int cqHead; // next completion reap returns
+    private int cqCount; // completed, not yet reaped
+    private int inFlight; // submitted, not yet completed
+
+    IoRing(int capacity) {
+        submissions = new Op[capacity];
+        completions = new Op[capacity];
+    }
+
+    // Prepares a read into buffer from offset, or from the seek pointer at CURRENT. Returns false if the ring is full.
+    boolean prepRead(int fd, byte[] buffer, int offset, long userData) {
+        return prepare(new Op(this, READ, fd, buffer, offset, userData));
+    }
+
+    // Prepares a write of buffer at offset, or at the seek pointer at CURRENT. Returns false if the ring is full.
+    boolean prepWrite(int fd, byte[] buffer, int offset, long userData) {
+        return prepare(new Op(this, WRITE, fd, buffer, offset, userData));
+    }
+
+    // Prepares an fsync: the file's buffered data, and everything written before it, reaches the DISK file.
+    // It does not wait for operations submitted with it; submit it after their completions are reaped.
+    boolean prepFsync(int fd, long userData) {
+        return prepare(new Op(this, FSYNC, fd, null, 0, userData));
+    }
+
+    private synchronized boolean prepare(Op op) {
+        if (sqCount + inFlight + cqCount >= submissions.length) return false;
+        submissions[(sqHead + sqCount++) % submissions.length] = op;
+        return true;
+    }
+
+    // Returns the next completed operation, or null if none is waiting.
+    synchronized Op reap() {
+        if (cqCount == 0) return null;
+        Op op = completions[cqHead];
+        completions[cqHead] = null;
+        cqHead = (cqHead + 1) % completions.length;
+        cqCount--;
+        return op;
+    }
+
+    // Returns the number of completions waiting to be reaped.
+    synchronized int ready() {
+        return cqCount;
+    }
+
+    // Returns the number of operations submitted and not yet completed.
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    // Takes every prepared operation off the submission queue for the kernel, counting them as in flight.
+    synchronized Op[] takeSubmissions() {
+        Op[] ops = new Op[sqCount];
+        for (int i = 0; i < ops.length; i++) {
+            ops[i] = submissions[sqHead];
+            submissions[sqHead] = null;
+            sqHead = (sqHead + 1) % submissions.length;
+        }
+        sqCount = 0;
+        inFlight += ops.length;
+        return ops;
+    }
+
+    // Posts a finished operation to the completion queue and wakes a waiting program.
+    synchronized void complete(Op op, int result) {
+        op.ftEnt = null;
+        op.result = result;
+        completions[(cqHead + cqCount++) % completions.length] = op;
+        inFlight--;
+        notifyAll();
+    }
+
+    // Sleeps until at least min completions are waiting, or until all operations in flight have completed if
+    // there are not that many. Returns the number waiting.
+    synchronized int waitCompletions(int min) {
+        while (cqCount < min && inFlight > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        return cqCount;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The IoStats class collects where the time goes on the way to the disk. For each kind of disk request (read, write,
+ * readv, writev, sync) it counts the requests and the bytes they moved, and keeps histograms of how long they waited
+ * in the disk queue, how long the disk took to serve them once it picked them, and how far the head moved for them.
+ * It also keeps histograms of the time threads spend asleep waiting for their requests, and waiting for room in a
+ * full disk queue. Every Disk of a striped disk reports here. Times are in microseconds, seeks in tracks.
+ * The cache Flusher reports its runs here too: how many, how many a high watermark woke, and histograms of the pages
+ * each wrote back and how long each took.
+ * The STATS system call reads the report and can start a new interval; the Stats program prints it from the Shell.
+ */
+
+class IoStats {
+    private final static String[] OPS = { null, "read", "write", "sync", "readv", "writev" }; // by Disk command
+
+    private static final long[] requests = new long[OPS.length];
+    private static final long[] bytes = new long[OPS.length];
+    private static final Histogram[] queueWait = new Histogram[OPS.length];
+    private static final Histogram[] service = new Histogram[OPS.length];
+    private static final Histogram[] seek = new Histogram[OPS.length];
+    private static final Histogram parked = new Histogram(); // threads asleep until their request is served
+    private static final Histogram queueFull = new Histogram(); // threads asleep until the disk queue has room
+    private static long flushRuns = 0; // Flusher runs that wrote pages back
+    private static long watermarkRuns = 0; // of those, woken by a high watermark rather than the age timer
+    private static final Histogram flushPages = new Histogram(); // pages each run wrote back
+    private static final Histogram flushTime = new Histogram(); // how long each run took
+    private static long since = System.currentTimeMillis(); // start of the interval
+
+    static {
+        for (int op = 1; op < OPS.length; op++) {
+            queueWait[op] = new Histogram();
+            service[op] = new Histogram();
+            seek[op] = new Histogram();
+        }
+    }
+
+    // Records a request the disk finished serving at finishedAt, having moved moved bytes.
+    static synchronized void served(Disk.Request request, long moved, long finishedAt) {
+        int op = request.command;
+        requests[op]++;
+        bytes[op] += moved;
+        queueWait[op].record((request.startedAt - request.queuedAt) / 1000);
+        service[op].record((finishedAt - request.startedAt) / 1000);
+        seek[op].record(request.tracks);
+    }
+
+    static synchronized void parked(long nanos) {
+        parked.record(nanos / 1000);
+    }
+
+    static synchronized void queueFull(long nanos) {
+        queueFull.record(nanos / 1000);
+    }
+
+    static synchronized void flushed(int pages, boolean watermark, long nanos) {
+        flushRuns++;
+        if (watermark) watermarkRuns++;
+        flushPages.record(pages);
+        flushTime.record(nanos / 1000);
+    }
+
+    // Returns the report for the interval so far, and starts a new one if reset is true.
+    static synchronized String report(boolean reset) {
+        StringBuilder report = new StringBuilder();
+        report.append("I/O stats over ").append(System.currentTimeMillis() - since).append(" ms\n");
+        for (int op = 1; op < OPS.length; op++) {
+            if (requests[op] == 0) continue;
+            report.append(OPS[op]).append(": ").append(requests[op]).append(" requests, ").append(bytes[op])
+                .append(" bytes\n");
+            report.append("  queue wait us  ").append(queueWait[op]).append('\n');
+            report.append("  service us     ").append(service[op]).append('\n');
+            report.append("  seek tracks    ").append(seek[op]).append('\n');
+        }
+        report.append("parked on requests us    ").append(parked).append('\n');
+        report.append("parked on full queue us  ").append(queueFull).append('\n');
+        if (flushRuns > 0) {
+            report.append("flusher: ").append(flushRuns).append(" runs, ").append(watermarkRuns)
+                .append(" over the high watermark\n");
+            report.append("  pages per run  ").append(flushPages).append('\n');
+            report.append("  run time us    ").append(flushTime).append('\n');
+        }
+        if (reset) clear();
+        return report.toString();
+    }
+
+    private static void clear() {
+        for (int op = 1; op < OPS.length; op++) {
+            requests[op] = 0;
+            bytes[op] = 0;
+            queueWait[op].clear();
+            service[op].clear();
+            seek[op].clear();
+        }
+        parked.clear();
+        queueFull.clear();
+        flushRuns = 0;
+        watermarkRuns = 0;
+        flushPages.clear();
+        flushTime.clear();
+        since = System.currentTimeMillis();
+    }
+}
@@ -12,11 +12,16 @@
 
 import java.io.BufferedReader;
 import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
 
 public class Kernel {
     // Interrupt requests
@@ -48,9 +53,27 @@ public class Kernel {
     public final static int SIZE = 16; // SysLib.size( int fd )
     public final static int SEEK = 17; // SysLib.seek( int fd, int offest,
     //              int whence )
-    public final static int FORMAT = 18; // SysLib.format( int files )
+    public final static int FORMAT = 18; // SysLib.format( int files[, int blockSize] )
     public final static int DELETE = 19; // SysLib.delete( String fileName )
 
+    // Instrumentation system calls
+    public final static int IOSTAT = 20; // SysLib.iostat( int counts[], boolean reset )
+    public final static int RAWREADV = 21; // SysLib.rawreadv( int blks[], byte b[][] )
+    public final static int RAWWRITEV = 22; // SysLib.rawwritev( int blks[], byte b[][] )
+    public final static int CREADV = 23; // SysLib.creadv( int blks[], byte b[][] )
+    public final static int CPREFETCH = 24; // SysLib.cprefetch( int blks[] )
+    public final static int CREADRANGE = 25; // SysLib.creadrange( BlockRange range )
+    public final static int CWRITERANGE = 26; // SysLib.cwriterange( BlockRange range )
+    public final static int MMAP = 27; // SysLib.mmap( int fd, int offset, int length )
+    public final static int MSYNC = 28; // SysLib.msync( ByteBuffer view )
+    public final static int DISKSCHED = 29; // SysLib.disksched( String policy )
+    public final static int DISKMODEL = 30; // SysLib.diskmodel( )
+    public final static int IOENTER = 31; // SysLib.iosubmit( IoRing ring ) and SysLib.iowait( IoRing ring, int min )
+    public final static int STATS = 32; // SysLib.stats( boolean reset )
+    public final static int COMPRESS = 33; // SysLib.compress( int fd )
+    public final static int CACHESIZE = 34; // SysLib.cachesize( int pages )
+    public final static int MUNMAP = 35; // SysLib.munmap( ByteBuffer view )
+
     // Predefined file descriptors
     public final static int STDIN = 0;
     public final static int STDOUT = 1;
@@ -62,46 +85,144 @@ public class Kernel {
 
     // System thread references
     private static Scheduler scheduler;
-    private static Disk disk;
+    private static BlockDevice disk;
     private static Cache cache;
+    private static AsyncIO asyncIO;
 
     // Synchronized Queues
     private static SyncQueue waitQueue; // for threads to wait for their child
-    private static SyncQueue ioQueue; // I/O queue
 
-    private final static int COND_DISK_REQ = 1; // wait condition
-    private final static int COND_DISK_FIN = 2; // wait condition
+    // Boot options, given as -D system properties (e.g. java -DthreadOS.fs.io=raw Boot) or as name=value lines in the
+    // CONFIG file, which only sets those not given with -D
+    public final static String CONFIG = "threadOS.conf";
+    public final static String FS_IO = "threadOS.fs.io"; // "cached" (default) or "raw" file system block I/O
+    public final static String FS_ALLOC = "threadOS.fs.alloc"; // "extent" (default) or "block" allocation
+    public final static String FS_WRITE = "threadOS.fs.write"; // "through" (default) or "behind" write buffering
+    public final static String FS_BLOCKSIZE = "threadOS.fs.blocksize"; // block size a blank disk or SysLib.format( files ) gets (default 512)
+    public final static String FS_READAHEAD = "threadOS.fs.readahead"; // max read-ahead window in blocks, at most half the cache, 0 = off
+    public final static String CACHE_PAGES = "threadOS.cache.pages"; // cache pages at boot (default 10)
+    public final static String CACHE_ADAPTIVE = "threadOS.cache.adaptive"; // "on" or "off" (default) resizing to fit the blocks in use
+    public final static String CACHE_BUDGET = "threadOS.cache.budget"; // KB an adaptive cache may grow to (default 256)
+    public final static String CACHE_POLICY = "threadOS.cache.policy"; // "clock" (default), "lru", "2q", "arc" or "clockpro" replacement
+    public final static String CACHE_SHARDS = "threadOS.cache.shards"; // independently locked cache shards (default one per 8 pages, up to 16)
+    public final static String CACHE_FLUSHER = "threadOS.cache.flusher"; // "on" (default) or "off" background write-back of dirty pages
+    public final static String CACHE_DIRTYRATIO = "threadOS.cache.dirtyratio"; // % of a shard's pages dirty that wakes the flusher (default 50)
+    public final static String CACHE_DIRTYAGE = "threadOS.cache.dirtyage"; // ms a page may stay dirty before the flusher writes it (default 1000)
+    public final static String DISK_SCHED = "threadOS.disk.sched"; // "clook" (default), "scan", "sstf" or "fcfs" request order
+    public final static String DISK_IMAGE = "threadOS.disk.image"; // "heap" (default) or "mapped" DISK file
+    public final static String DISK_BLOCKS = "threadOS.disk.blocks"; // disk size in blocks (default 1000); a mapped image may be larger
+    public final static String DISK_MODEL = "threadOS.disk.model"; // "hdd" (default), "zero", "ssd" or "replay" latency
+    public final static String DISK_TRACE = "threadOS.disk.trace"; // latency trace file the replay model plays back
+    public final static String DISK_STRIPES = "threadOS.disk.stripes"; // disks to stripe over (default 1, the single DISK file)
+    public final static String DISK_STRIPEUNIT = "threadOS.disk.stripeunit"; // consecutive blocks per disk in a stripe (default 8)
     // System thread references
     private static FileSystem fileSystem;
     // Standard input
     private static BufferedReader input
         = new BufferedReader(new InputStreamReader(System.in));
 
+    // Disk traffic counters, read and reset through IOSTAT
+    // Every thread doing raw I/O bumps them: read-ahead, the flusher and the AsyncIO workers as well as user threads
+    private static final AtomicInteger rawReads = new AtomicInteger(); // # blocks read from disk
+    private static final AtomicInteger rawWrites = new AtomicInteger(); // # blocks written to disk
+    private static final AtomicInteger diskRequests = new AtomicInteger(); // # disk requests, a vectored one counting once
+
     private static HashMap < Integer, FileTableEntry > fdMap = new HashMap < > ();
     private static int nextFd = 0; // Simple counter to generate new file descriptors
 
     // The heart of Kernel
     public static int interrupt(int irq, int cmd, int param, Object args) {
         TCB myTcb;
+        Disk.Request request;
         switch (irq) {
             case INTERRUPT_SOFTWARE: // System calls
                 switch (cmd) {
                     case BOOT:
+                        loadConfig(CONFIG);
+
                         // instantiate and start a scheduler
                         scheduler = new Scheduler();
                         scheduler.start();
 
-                        // instantiate and start a disk
-                        disk = new Disk(1000);
+                        // instantiate and start a disk, its image read into the heap or mapped from the DISK file.
+                        // striped over several disks, each has its own image file, DISK0, DISK1, ...
+                        int diskBlocks = Integer.getInteger(DISK_BLOCKS, 1000);
+                        int stripes = Math.max(1, Integer.getInteger(DISK_STRIPES, 1));
+                        int stripeUnit = Math.max(1, Integer.getInteger(DISK_STRIPEUNIT, 8));
+                        String imageKind = System.getProperty(DISK_IMAGE, DiskImage.HEAP);
+                        if (stripes == 1) {
+                            DiskImage image = DiskImage.open(imageKind, "DISK", diskBlocks);
+                            if (image == null) image = DiskImage.open(DiskImage.HEAP, "DISK", diskBlocks);
+                            disk = new Disk(image);
+                            imageKind = image.getKind();
+                        } else {
+                            int perDisk = (diskBlocks + stripes * stripeUnit - 1) / (stripes * stripeUnit) * stripeUnit;
+                            DiskImage[] images = new DiskImage[stripes];
+                            for (int i = 0; i < stripes; i++) {
+                                images[i] = DiskImage.open(imageKind, "DISK" + i, perDisk);
+                                if (images[i] == null) images[i] = DiskImage.open(DiskImage.HEAP, "DISK" + i, perDisk);
+                            }
+                            disk = new StripedDisk(images, stripeUnit, diskBlocks);
+                            imageKind = images[0].getKind();
+                            SysLib.cerr("threadOS: striped over " + stripes + " disks, " + stripeUnit + " blocks per stripe unit\n");
+                        }
+                        SysLib.cerr("threadOS: DISK image is " + imageKind + ", " + disk.getDiskSize() + " blocks\n");
+                        DiskScheduler diskScheduler = DiskScheduler.forName(System.getProperty(DISK_SCHED, DiskScheduler.CLOOK));
+                        if (diskScheduler != null) disk.setScheduler(diskScheduler);
+                        SysLib.cerr("threadOS: disk scheduling is " + disk.getScheduler().getName() + "\n");
+                        DiskModel diskModel = DiskModel.forName(System.getProperty(DISK_MODEL, DiskModel.HDD),
+                                                                System.getProperty(DISK_TRACE));
+                        if (diskModel != null) disk.setModel(diskModel);
+                        SysLib.cerr("threadOS: disk model is " + disk.getModel().describe() + "\n");
                         disk.start();
 
                         // instantiate a cache memory
-                        cache = new Cache(disk.blockSize, 10);
+                        ReplacementPolicy replacement = ReplacementPolicy.forName(System.getProperty(CACHE_POLICY, ReplacementPolicy.CLOCK));
+                        if (replacement == null) replacement = ReplacementPolicy.forName(ReplacementPolicy.CLOCK);
+                        int cachePages = Math.max(1, Integer.getInteger(CACHE_PAGES, 10));
+                        cache = new Cache(Disk.blockSize, cachePages, replacement,
+                                          Integer.getInteger(CACHE_SHARDS, Cache.defaultShards(cachePages)));
+                        SysLib.cerr("threadOS: cache of " + cache.getPages() + " pages, replacement is " + cache.getPolicy()
+                                    + ", " + cache.getShards() + " shards\n");
+                        // an adaptive cache keeps a page per shard and at least CacheSizer.MINPAGES,
+                        // and grows no further than the budget
+                        if ("on".equals(System.getProperty(CACHE_ADAPTIVE))) {
+                            int budget = Integer.getInteger(CACHE_BUDGET, CacheSizer.DEFAULTBUDGET);
+                            CacheSizer sizer = new CacheSizer(cache, Math.max(cache.getShards(), CacheSizer.MINPAGES),
+                                                              budget * 1024 / Disk.blockSize);
+                            sizer.start();
+                            SysLib.cerr("threadOS: cache resizes between " + sizer.minPages + " and " + sizer.maxPages
+                                        + " pages\n");
+                        }
 
                         // instantiate synchronized queues
-                        ioQueue = new SyncQueue();
                         waitQueue = new SyncQueue(scheduler.getMaxThreads());
-                        fileSystem = new FileSystem(1000);
+
+                        // choose whether the file system goes through the cache or straight to disk
+                        BlockIO.setMode(System.getProperty(FS_IO, BlockIO.CACHED));
+                        SysLib.cerr("threadOS: file system block I/O is " + BlockIO.getMode() + "\n");
+                        // the flusher only has work while the file system goes through the cache
+                        if (BlockIO.isCached() && !"off".equals(System.getProperty(CACHE_FLUSHER))) {
+                            Flusher flusher = new Flusher(cache, Integer.getInteger(CACHE_DIRTYRATIO, Flusher.DEFAULTRATIO),
+                                                          Long.getLong(CACHE_DIRTYAGE, Flusher.DEFAULTAGE));
+                            cache.setFlusher(flusher);
+                            flusher.start();
+                            SysLib.cerr("threadOS: cache flusher writes back over " + flusher.highRatio + "% dirty or after "
+                                        + flusher.maxAge + " ms\n");
+                        }
+                        // the superblock caps the file system at Short.MAX_VALUE blocks, as inodes hold block numbers as shorts
+                        int blockSize = Integer.getInteger(FS_BLOCKSIZE, Disk.blockSize);
+                        if (!BlockIO.isBlockSize(blockSize)) blockSize = Disk.blockSize;
+                        fileSystem = new FileSystem(disk.getDiskSize(), blockSize);
+                        SysLib.cerr("threadOS: file system blocks are " + BlockIO.blockSize() + " bytes\n");
+                        fileSystem.setContiguousAllocation(!"block".equals(System.getProperty(FS_ALLOC)));
+                        // a window larger than half the cache only evicts its own unread blocks
+                        int readAhead = Math.min(cache.getPages() / 2, Integer.getInteger(FS_READAHEAD, cache.getPages()));
+                        fileSystem.setReadAhead(readAhead);
+                        fileSystem.setWriteBehind("behind".equals(System.getProperty(FS_WRITE)));
+
+                        // instantiate the I/O threads that serve IoRing submissions
+                        asyncIO = new AsyncIO(fileSystem);
                         return OK;
                     case EXEC:
                         return sysExec((String[]) args);
@@ -129,36 +250,50 @@ public class Kernel {
                         scheduler.sleepThread(param); // param = milliseconds
                         return OK;
                     case RAWREAD: // read a block of data from disk
-                        while (disk.read(param, (byte[]) args) == false)
-                            ioQueue.enqueueAndSleep(COND_DISK_REQ);
-                        while (disk.testAndResetReady() == false)
-                            ioQueue.enqueueAndSleep(COND_DISK_FIN);
-
-                        // it's possible that a thread waiting to make a request was released by the disk,
-                        // but then promptly looped back, found the buffer wasn't available for sending (bufferReady == true)
-                        // and then went back to sleep
+                        rawReads.incrementAndGet();
+                        diskRequests.incrementAndGet();
+                        if ((request = disk.read(param, (byte[]) args)) == null) return ERROR;
+                        request.waitServed();
 
                         // now you can access data in buffer
                         return OK;
                     case RAWWRITE: // write a block of data to disk
-                        while (disk.write(param, (byte[]) args) == false)
-                            ioQueue.enqueueAndSleep(COND_DISK_REQ);
-                        while (disk.testAndResetReady() == false)
-                            ioQueue.enqueueAndSleep(COND_DISK_FIN);
-                        // it's possible that a thread waiting to make a request was released by the disk,
-                        // but then promptly looped back, found the buffer wasn't available for sending (bufferReady == true)
-                        // and then went back to sleep
-
+                        rawWrites.incrementAndGet();
+                        diskRequests.incrementAndGet();
+                        if ((request = disk.write(param, (byte[]) args)) == null) return ERROR;
+                        request.waitServed();
                         return OK;
+                    case RAWREADV: // read several blocks in one disk request
+                    case RAWWRITEV: // write several blocks in one disk request
+                        {
+                            Object[] vector = (Object[]) args;
+                            int[] blocks = (int[]) vector[0];
+                            byte[][] buffers = (byte[][]) vector[1];
+                            if (blocks.length != buffers.length) return ERROR;
+                            diskRequests.incrementAndGet();
+                            if (cmd == RAWREADV) {
+                                rawReads.addAndGet(blocks.length);
+                                request = disk.readv(blocks, buffers);
+                            } else {
+                                rawWrites.addAndGet(blocks.length);
+                                request = disk.writev(blocks, buffers);
+                            }
+                            if (request == null) return ERROR;
+                            // one completion for the whole list
+                            request.waitServed();
+                            return OK;
+                        }
                     case SYNC: // synchronize disk data to a real file
-                        while (disk.sync() == false)
-                            ioQueue.enqueueAndSleep(COND_DISK_REQ);
-                        while (disk.testAndResetReady() == false)
-                            ioQueue.enqueueAndSleep(COND_DISK_FIN);
-
-                        // it's possible that a thread waiting to make a request was released by the disk,
-                        // but then promptly looped back, found the buffer wasn't available for sending (bufferReady == true)
-                        // and then went back to sleep
+                        // the directory and write-behind data get their blocks first; this takes inode locks, so not
+                        // while the cache is held
+                        fileSystem.syncFiles();
+                        // the free space bitmap and the blocks the file system left dirty in the cache must reach the disk first.
+                        // holding the cache also keeps read-ahead off the disk until the sync is done
+                        synchronized (cache) {
+                            fileSystem.syncFreeMap();
+                            cache.writeBackAll();
+                            disk.sync().waitServed();
+                        }
 
                         return OK;
                     case READ:
@@ -232,6 +367,17 @@ public class Kernel {
                         return result;
                     case CREAD:
                         return cache.read(param, (byte[]) args) ? OK : ERROR;
+                    case CREADV:
+                        {
+                            Object[] vector = (Object[]) args;
+                            return cache.readv((int[]) vector[0], (byte[][]) vector[1]) ? OK : ERROR;
+                        }
+                    case CREADRANGE:
+                        return cache.readRange((BlockRange) args) ? OK : ERROR;
+                    case CWRITERANGE:
+                        return cache.writeRange((BlockRange) args) ? OK : ERROR;
+                    case CPREFETCH:
+                        return cache.prefetch((int[]) args);
                     case CWRITE:
                         return cache.write(param, (byte[]) args) ? OK : ERROR;
                     case CSYNC:
@@ -287,6 +433,25 @@ public class Kernel {
                             return ERROR;
                         }
 
+                    case MMAP:
+                        // Map part of a file into memory; the view is handed back in call[1]
+                        myTcb = scheduler.getMyTcb();
+                        if (myTcb != null) {
+                            Object[] call = (Object[]) args;
+                            int[] region = (int[]) call[0];
+                            FileTableEntry ftEnt = myTcb.getFtEnt(param);
+                            if (ftEnt == null) return ERROR;
+                            call[1] = fileSystem.mmap(ftEnt, region[0], region[1]);
+                            return call[1] != null ? OK : ERROR;
+                        }
+                        return ERROR;
+                    case MSYNC:
+                        // Write a mapped region's changes back to its file
+                        return fileSystem.msync((ByteBuffer) args);
+                    case MUNMAP:
+                        // Write a mapped region's changes back and end the mapping
+                        return fileSystem.munmap((ByteBuffer) args);
+
                     case SIZE:
                         // Retrieve the size of a file
                         {
@@ -322,6 +487,7 @@ public class Kernel {
                         // Perform disk formatting operation
                         {
                             // Format the disk with the specified parameter and return success or failure
+                            if (args != null) return fileSystem.format(param, (Integer) args) ? OK : ERROR;
                             return fileSystem.format(param) ? OK : ERROR;
                         }
 
@@ -331,16 +497,106 @@ public class Kernel {
                             // Delete the specified file and return success or failure
                             return fileSystem.delete((String) args) ? OK : ERROR;
                         }
+
+                    case DISKSCHED:
+                        // Switch the order the disk serves queued requests in; an empty name just reports it
+                        {
+                            StringBuffer policy = (StringBuffer) args;
+                            if (policy == null) return ERROR;
+                            if (policy.length() > 0) {
+                                DiskScheduler chosen = DiskScheduler.forName(policy.toString());
+                                if (chosen == null) return ERROR;
+                                disk.setScheduler(chosen);
+                            }
+                            policy.setLength(0);
+                            policy.append(disk.getScheduler().getName());
+                            return OK;
+                        }
+
+                    case DISKMODEL:
+                        // Report the latency model the disk was booted with
+                        {
+                            StringBuffer model = (StringBuffer) args;
+                            if (model == null) return ERROR;
+                            model.setLength(0);
+                            model.append(disk.getModel().describe());
+                            return OK;
+                        }
+
+                    case IOENTER:
+                        // Hand the ring's prepared operations to the I/O threads, then wait for param completions
+                        myTcb = scheduler.getMyTcb();
+                        if (myTcb != null && args != null) {
+                            IoRing ring = (IoRing) args;
+                            IoRing.Op[] ops = ring.takeSubmissions();
+                            for (IoRing.Op op : ops) {
+                                op.ftEnt = myTcb.getFtEnt(op.fd); // the descriptors are the calling thread's
+                            }
+                            asyncIO.submit(ops);
+                            if (param > 0) ring.waitCompletions(param);
+                            return ops.length;
+                        }
+                        return ERROR;
+
+                    case COMPRESS:
+                        // Keep the file's data as compressed chunks from now on; the file must still be empty
+                        myTcb = scheduler.getMyTcb();
+                        if (myTcb != null) {
+                            FileTableEntry ftEnt = myTcb.getFtEnt(param);
+                            if (ftEnt == null) return ERROR;
+                            return fileSystem.compress(ftEnt) ? OK : ERROR;
+                        }
+                        return ERROR;
+
+                    case CACHESIZE:
+                        // Resize the cache if param > 0, then return its size in pages
+                        if (param > 0) cache.resize(param);
+                        return cache.getPages();
+
+                    case STATS:
+                        // Report the disk request counts and latency histograms, then start a new interval if asked to
+                        {
+                            StringBuffer report = (StringBuffer) args;
+                            if (report == null) return ERROR;
+                            report.setLength(0);
+                            report.append(IoStats.report(param != 0));
+                            return OK;
+                        }
+
+                    case IOSTAT:
+                        // Report the disk block traffic so far, then clear it if asked to
+                        {
+                            int[] counts = (int[]) args;
+                            if (counts == null || counts.length < 2) return ERROR;
+                            counts[0] = param != 0 ? rawReads.getAndSet(0) : rawReads.get();
+                            counts[1] = param != 0 ? rawWrites.getAndSet(0) : rawWrites.get();
+                            long tracks = disk.getSeekTracks(param != 0);
+                            if (counts.length > 2) counts[2] = (int) tracks; // head movement in tracks
+                            int requests = param != 0 ? diskRequests.getAndSet(0) : diskRequests.get();
+                            if (counts.length > 3) counts[3] = requests;
+                            int[] prefetch = cache.getPrefetchCounts(param != 0);
+                            for (int i = 0; i < prefetch.length && 4 + i < counts.length; i++) {
+                                counts[4 + i] = prefetch[i]; // blocks read ahead, hits, waste
+                            }
+                            long syncBytes = disk.getSyncBytes(param != 0);
+                            if (counts.length > 7) counts[7] = (int) Math.min(syncBytes, Integer.MAX_VALUE); // bytes synced to DISK
+                            int[] hits = cache.getHitCounts(param != 0);
+                            for (int i = 0; i < hits.length && 8 + i < counts.length; i++) {
+                                counts[8 + i] = hits[i]; // cache accesses, misses
+                            }
+                            int[] writeBacks = cache.getWriteBackCounts(param != 0);
+                            for (int i = 0; i < writeBacks.length && 10 + i < counts.length; i++) {
+                                counts[10 + i] = writeBacks[i]; // dirty evictions, pages the flusher wrote back
+                            }
+                            return OK;
+                        }
                 }
                 // If none of the specified operations match the opCode, return error
                 return ERROR;
 
             case INTERRUPT_DISK: // Disk interrupts
-                // wake up the thread waiting for a service completion
-                ioQueue.dequeueAndWakeup(COND_DISK_FIN);
-
-                // wake up the thread waiting for a request acceptance
-                //    ioQueue.dequeueAndWakeup(COND_DISK_REQ);
+                // complete the request the disk has just served, waking only the thread that made it
+                if (args != null) ((Disk.Request) args).complete();
 
                 return OK;
             case INTERRUPT_IO: // other I/O interrupts (not implemented)
@@ -349,6 +605,23 @@ public class Kernel {
         return OK;
     }
 
+    // Sets the boot options in the file name that no -D option set; a missing file sets none
+    private static void loadConfig(String name) {
+        File file = new File(name);
+        if (!file.isFile()) return;
+        Properties options = new Properties();
+        try (FileReader reader = new FileReader(file)) {
+            options.load(reader);
+        } catch (IOException e) {
+            SysLib.cerr("threadOS: cannot read " + name + ": " + e + "\n");
+            return;
+        }
+        for (String option : options.stringPropertyNames()) {
+            if (System.getProperty(option) == null) System.setProperty(option, options.getProperty(option).trim());
+        }
+        SysLib.cerr("threadOS: boot options from " + name + "\n");
+    }
+
     // Spawning a new thread
     private static int sysExec(String args[]) {
         String thrName = args[0]; // args[0] has a thread name
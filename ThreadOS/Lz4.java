@@ -0,0 +1,134 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The Lz4 class compresses and decompresses byte arrays in the LZ4 block format, for compressed files. It trades
+ * ratio for speed the way LZ4 does: one pass, a hash table of the last position each 4-byte sequence was seen at,
+ * and no entropy coding, so decompressing is little more than copying. Output is a list of sequences, each a token
+ * (literal count and match length, 4 bits each), the literals, a 2-byte little-endian back offset and the match,
+ * with counts of 15 or more continued in extra bytes. The last sequence holds only literals.
+ */
+
+class Lz4 {
+    private final static int MINMATCH = 4; // shortest match worth a sequence
+    private final static int LASTLITERALS = 5; // the format ends with at least this many literals
+    private final static int MFLIMIT = 12; // no match starts this close to the end
+    private final static int MAXOFFSET = 65535; // farthest back a match can refer
+    private final static int HASHLOG = 12; // the hash table has 2^HASHLOG entries
+
+    // Returns the largest compressed size of length bytes, for sizing the destination of compress.
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    // Compresses src[0, length) into dst, which must hold maxCompressedLength(length) bytes.
+    // Returns the compressed length, which can exceed length for data that does not compress.
+    static int compress(byte[] src, int length, byte[] dst) {
+        int[] table = new int[1 << HASHLOG]; // position + 1 of the last sequence seen with each hash, 0 = none
+        int anchor = 0; // first byte not emitted yet
+        int out = 0;
+        int pos = 0;
+        while (pos < length - MFLIMIT) {
+            int sequence = readInt(src, pos);
+            int hash = (sequence * -1640531535) >>> (32 - HASHLOG);
+            int candidate = table[hash] - 1;
+            table[hash] = pos + 1;
+            if (candidate < 0 || pos - candidate > MAXOFFSET || readInt(src, candidate) != sequence) {
+                pos++;
+                continue;
+            }
+
+            // Extend the match forward as far as the format allows, then backward over pending literals
+            int matchEnd = pos + MINMATCH;
+            int ref = candidate + MINMATCH;
+            while (matchEnd < length - LASTLITERALS && src[matchEnd] == src[ref]) {
+                matchEnd++;
+                ref++;
+            }
+            while (pos > anchor && candidate > 0 && src[pos - 1] == src[candidate - 1]) {
+                pos--;
+                candidate--;
+            }
+
+            int literals = pos - anchor;
+            int matchLength = matchEnd - pos - MINMATCH;
+            int token = out++;
+            dst[token] = (byte) ((Math.min(literals, 15) << 4) | Math.min(matchLength, 15));
+            out = writeLength(literals, dst, out);
+            System.arraycopy(src, anchor, dst, out, literals);
+            out += literals;
+            dst[out++] = (byte) (pos - candidate);
+            dst[out++] = (byte) ((pos - candidate) >>> 8);
+            out = writeLength(matchLength, dst, out);
+            pos = matchEnd;
+            anchor = pos;
+        }
+
+        int literals = length - anchor;
+        dst[out++] = (byte) (Math.min(literals, 15) << 4);
+        out = writeLength(literals, dst, out);
+        System.arraycopy(src, anchor, dst, out, literals);
+        return out + literals;
+    }
+
+    // Decompresses src[0, length) into dst, which must have room for all of it.
+    // Returns the decompressed length, or -1 if src is not valid compressed data.
+    static int decompress(byte[] src, int length, byte[] dst) {
+        int in = 0;
+        int out = 0;
+        try {
+            while (in < length) {
+                int token = src[in++] & 0xff;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int more;
+                    do {
+                        more = src[in++] & 0xff;
+                        literals += more;
+                    } while (more == 255);
+                }
+                System.arraycopy(src, in, dst, out, literals);
+                in += literals;
+                out += literals;
+                if (in >= length) break; // The last sequence has no match
+
+                int offset = (src[in] & 0xff) | (src[in + 1] & 0xff) << 8;
+                in += 2;
+                int matchLength = token & 15;
+                if (matchLength == 15) {
+                    int more;
+                    do {
+                        more = src[in++] & 0xff;
+                        matchLength += more;
+                    } while (more == 255);
+                }
+                matchLength += MINMATCH;
+                if (offset == 0 || offset > out) return -1;
+                // The match may overlap the bytes it produces, so it is copied a byte at a time
+                for (int from = out - offset, end = out + matchLength; out < end; ) {
+                    dst[out++] = dst[from++];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return -1;
+        }
+        return out;
+    }
+
+    // Writes the part of a literal count or match length that does not fit in its token nibble.
+    private static int writeLength(int length, byte[] dst, int out) {
+        if (length < 15) return out;
+        for (length -= 15; length >= 255; length -= 255) {
+            dst[out++] = (byte) 255;
+        }
+        dst[out++] = (byte) length;
+        return out;
+    }
+
+    private static int readInt(byte[] b, int offset) {
+        return (b[offset] & 0xff) | (b[offset + 1] & 0xff) << 8 | (b[offset + 2] & 0xff) << 16 | b[offset + 3] << 24;
+    }
+}
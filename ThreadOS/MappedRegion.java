@@ -0,0 +1,30 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The MappedRegion class is one mmap'ed stretch of a file. The program works on view, a ByteBuffer over data, with
+ * plain memory accesses. data is a copy of the file's bytes, not the file itself: clean holds them as they were last
+ * read from or written to the file, so msync can tell which bytes the program changed, write back only the blocks
+ * holding them, and take every other byte from the file as it is now.
+ */
+
+import java.nio.ByteBuffer;
+
+class MappedRegion {
+    final FileTableEntry ftEnt; // the open file this region maps
+    final int offset; // file offset of data[0]
+    final byte[] data; // the region's bytes, shared with view
+    final byte[] clean; // data as of the last copy-in or msync; null for a read-only mapping
+    final ByteBuffer view; // what SysLib.mmap hands the program
+
+    MappedRegion(FileTableEntry ftEnt, int offset, int length, boolean writable) {
+        this.ftEnt = ftEnt;
+        this.offset = offset;
+        data = new byte[length];
+        clean = writable ? new byte[length] : null;
+        view = writable ? ByteBuffer.wrap(data) : ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * MmapBench measures random access into a file, the pattern of index lookups. It reads 4-byte records at random
+ * offsets of a cached file first with seek + read pairs and then through a SysLib.mmap view of the same file, and
+ * prints the time per record of each.
+ * Usage: l MmapBench [records]
+ */
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+class MmapBench extends Thread {
+    private final static int DEFAULTRECORDS = 100000;
+    private final static int FILEBYTES = 512 * 4; // stays in the cache
+    private final int records;
+
+    public MmapBench(String args[]) {
+        records = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTRECORDS;
+    }
+
+    public MmapBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.format(48);
+        byte[] data = new byte[FILEBYTES];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+        int fd = SysLib.open("index", "w+");
+        SysLib.write(fd, data);
+
+        byte[] record = new byte[4];
+        Random random = new Random(430);
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            SysLib.seek(fd, random.nextInt(FILEBYTES / 4) * 4, 0);
+            SysLib.read(fd, record);
+            sum += SysLib.bytes2int(record, 0);
+        }
+        report("seek + read", start);
+
+        ByteBuffer view = SysLib.mmap(fd, 0, FILEBYTES);
+        random = new Random(430);
+        start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            sum -= view.getInt(random.nextInt(FILEBYTES / 4) * 4);
+        }
+        report("mmap view", start);
+        SysLib.close(fd);
+
+        if (sum != 0) SysLib.cout("the two passes read different records\n");
+        SysLib.exit();
+    }
+
+    private void report(String method, long start) {
+        long elapsed = System.nanoTime() - start;
+        SysLib.cout(method + ": " + records + " random records, " + elapsed / records + " ns per record\n");
+    }
+}
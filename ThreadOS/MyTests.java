@@ -1,5 +1,12 @@
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
 class MyTests extends Thread {
     private final static int DEFAULTFILES = 48;
+    private final static int MAXREADALLOC = 16; // bytes a steady-state read may allocate, on average
     private final int files;
     private int fd;
     private final byte[] buf16 = new byte[16];
@@ -37,6 +44,40 @@ class MyTests extends Thread {
             SysLib.cout("Concurrent File Access test: Success\n");
         if (largeFileTest())
             SysLib.cout("Large File test: Success\n");
+        if (readAllocationTest())
+            SysLib.cout("Read Allocation test: Success\n");
+        if (mmapTest())
+            SysLib.cout("Mmap test: Success\n");
+        if (asyncIoTest())
+            SysLib.cout("Async I/O test: Success\n");
+        if (compressionTest())
+            SysLib.cout("Compression test: Success\n");
+        if (chunkReuseTest())
+            SysLib.cout("Chunk Reuse test: Success\n");
+        if (cacheResizeTest())
+            SysLib.cout("Cache Resize test: Success\n");
+        if (diskFullTest())
+            SysLib.cout("Disk Full test: Success\n");
+        if (remountTest())
+            SysLib.cout("Remount test: Success\n");
+        if (pointerFormatTest())
+            SysLib.cout("Pointer Format test: Success\n");
+        if (blockSizeTest())
+            SysLib.cout("Block Size test: Success\n");
+        if (diskSchedulerTest())
+            SysLib.cout("Disk Scheduler test: Success\n");
+        if (diskRequestTest())
+            SysLib.cout("Disk Request test: Success\n");
+        if (mappedImageTest())
+            SysLib.cout("Mapped Image test: Success\n");
+        if (syncBytesTest())
+            SysLib.cout("Sync Bytes test: Success\n");
+        if (stripeMappingTest())
+            SysLib.cout("Stripe Mapping test: Success\n");
+        if (ioRingTest())
+            SysLib.cout("IoRing test: Success\n");
+        if (statsTest())
+            SysLib.cout("Stats test: Success\n");
         
         SysLib.cout("All tests completed\n");
         SysLib.exit();
@@ -204,5 +245,906 @@ class MyTests extends Thread {
         return true;
     }
 
+    // Reads of a file that sits in the cache should copy straight out of the cache's frames and allocate nothing.
+    // Measures this thread's allocation over many seek+read pairs, minus the seeks alone (SysLib.seek allocates
+    // its argument array), and fails if a read averages more than MAXREADALLOC bytes. The file is four blocks of
+    // whatever size the disk has; the cache grows to hold them for the test if it is smaller.
+    private boolean readAllocationTest() {
+        if ("raw".equals(System.getProperty(Kernel.FS_IO))) {
+            SysLib.cout("Read allocation test skipped: raw block I/O stages blocks by design.\n");
+            return false;
+        }
+        String fileName = "allocTestFile";
+        fd = SysLib.open(fileName, "w+");
+        int blockSize = BlockIO.blockSize();
+        int pages = SysLib.cachesize(0);
+        SysLib.cachesize(Math.max(pages, 4 * blockSize / Disk.blockSize + 2));
+        byte[] fileBuf = new byte[blockSize * 4];
+        for (int i = 0; i < fileBuf.length; i++) {
+            fileBuf[i] = (byte)(i % 251);
+        }
+        SysLib.write(fd, fileBuf);
+        SysLib.close(fd);
+        fd = SysLib.open(fileName, "r");
+
+        byte[] readBuffer = new byte[blockSize];
+        int reads = 5000;
+        readLoop(reads, readBuffer); // warm up: fill the cache and let the JIT settle
+        readLoop(reads, null);
+        long total = readLoop(reads, readBuffer);
+        long seeks = readLoop(reads, null);
+        SysLib.close(fd);
+        SysLib.cachesize(pages);
+
+        long perRead = Math.max(0, total - seeks) / reads;
+        int offset = ((reads - 1) * 200) % (fileBuf.length - readBuffer.length); // where the last read started
+        for (int i = 0; i < readBuffer.length; i++) {
+            if (readBuffer[i] != fileBuf[offset + i]) {
+                SysLib.cout("Read allocation test data mismatch.\n");
+                return false;
+            }
+        }
+        if (perRead > MAXREADALLOC) {
+            SysLib.cout("Read allocation test failed: " + perRead + " bytes allocated per read.\n");
+            return false;
+        }
+        SysLib.cout("Read allocation test passed: " + perRead + " bytes allocated per read.\n");
+        return true;
+    }
+
+    // Maps a region spanning three blocks and checks msync writes back just the block changed, keeps a write made to
+    // the file after mmap, and that close and munmap write back too. Sized from the block size the disk has.
+    private boolean mmapTest() {
+        String fileName = "mmapTestFile";
+        int blockSize = BlockIO.blockSize();
+        fd = SysLib.open(fileName, "w+");
+        byte[] fileBuf = new byte[blockSize * 3];
+        for (int i = 0; i < fileBuf.length; i++) {
+            fileBuf[i] = (byte)(i % 256);
+        }
+        SysLib.write(fd, fileBuf);
+
+        // Bytes 100 up to two blocks further span all three blocks
+        int length = blockSize * 2;
+        ByteBuffer view = SysLib.mmap(fd, 100, length);
+        if (view == null || view.capacity() != length || view.get(0) != fileBuf[100]
+                || view.get(length - 1) != fileBuf[length + 99]) {
+            return mmapFailed("mapped bytes do not match the file.");
+        }
+        if (SysLib.mmap(fd, blockSize * 2, length) != null) {
+            return mmapFailed("a region past the end of the file was mapped.");
+        }
+        view.put(blockSize, (byte) 7); // file offset blockSize + 100, in the second block
+        int written = SysLib.msync(view);
+        if (written != blockSize) { // only the second block's share of the region changed
+            return mmapFailed("msync wrote back " + written + " bytes instead of " + blockSize + ".");
+        }
+        byte[] readBuffer = new byte[1];
+        SysLib.seek(fd, blockSize + 100, 0);
+        SysLib.read(fd, readBuffer);
+        if (readBuffer[0] != 7) {
+            return mmapFailed("msync'ed byte not in the file.");
+        }
+        // A write to the file after the copy-in, in a block the view changes too: msync must keep both
+        SysLib.seek(fd, blockSize + 150, 0);
+        SysLib.write(fd, new byte[] { 42 });
+        view.put(blockSize + 10, (byte) 8); // file offset blockSize + 110
+        SysLib.msync(view);
+        SysLib.seek(fd, blockSize + 110, 0);
+        byte[] around = new byte[41];
+        SysLib.read(fd, around);
+        if (around[0] != 8 || around[40] != 42 || view.get(blockSize + 50) != 42) {
+            return mmapFailed("msync lost a write made to the file after mmap.");
+        }
+        view.put(0, (byte) 9); // file offset 100, left for close to write back
+        SysLib.close(fd);
+
+        fd = SysLib.open(fileName, "r");
+        SysLib.seek(fd, 100, 0);
+        SysLib.read(fd, readBuffer);
+        ByteBuffer readOnly = SysLib.mmap(fd, 0, blockSize);
+        SysLib.close(fd);
+        if (readBuffer[0] != 9) {
+            SysLib.cout("Mmap test: close did not write the mapping back.\n");
+            return false;
+        }
+        if (readOnly == null || !readOnly.isReadOnly() || readOnly.get(100) != 9) {
+            SysLib.cout("Mmap test: read-only mapping is wrong.\n");
+            return false;
+        }
+
+        // munmap writes back and ends the mapping, with the file still open
+        fd = SysLib.open(fileName, "w+");
+        view = SysLib.mmap(fd, 0, 100);
+        view.put(0, (byte) 5);
+        int unmapped = SysLib.munmap(view);
+        int again = SysLib.msync(view);
+        SysLib.seek(fd, 0, 0);
+        SysLib.read(fd, readBuffer);
+        SysLib.close(fd);
+        if (unmapped != 100 || again != -1 || readBuffer[0] != 5) {
+            SysLib.cout("Mmap test: munmap returned " + unmapped + ", then msync " + again + ".\n");
+            return false;
+        }
+        SysLib.cout("Mmap test passed.\n");
+        return true;
+    }
+
+    // Reports why the mmap test failed and closes its file; format waits for every open file to be closed.
+    private boolean mmapFailed(String why) {
+        SysLib.close(fd);
+        SysLib.cout("Mmap test: " + why + "\n");
+        return false;
+    }
+
+    private boolean asyncIoTest() {
+        String fileName = "asyncTestFile";
+        fd = SysLib.open(fileName, "w+");
+        SysLib.write(fd, new byte[512 * 4]);
+
+        // Overwrite the four blocks out of order with one submission; block i is filled with i + 1
+        IoRing ring = new IoRing(4);
+        for (int i = 3; i >= 0; i--) {
+            byte[] block = new byte[512];
+            Arrays.fill(block, (byte)(i + 1));
+            ring.prepWrite(fd, block, i * 512, i);
+        }
+        if (ring.prepFsync(fd, 4)) {
+            SysLib.cout("Async I/O test: ring took more operations than it holds.\n");
+            return false;
+        }
+        if (SysLib.iowait(ring, 4) != 4) {
+            SysLib.cout("Async I/O test: writes did not all complete.\n");
+            return false;
+        }
+        for (IoRing.Op op; (op = ring.reap()) != null; ) {
+            if (op.result != 512) {
+                SysLib.cout("Async I/O test: write " + op.userData + " returned " + op.result + ".\n");
+                return false;
+            }
+        }
+
+        // Read them back in one submission, with an fsync and an operation on a closed descriptor
+        byte[][] blocks = new byte[4][512];
+        for (int i = 0; i < 2; i++) {
+            ring.prepRead(fd, blocks[i], i * 512, i);
+        }
+        ring.prepFsync(fd, 2);
+        ring.prepRead(31, blocks[3], 0, 3);
+        if (SysLib.iosubmit(ring) != 4 || SysLib.iowait(ring, 4) != 4) {
+            SysLib.cout("Async I/O test: reads did not all complete.\n");
+            return false;
+        }
+        for (IoRing.Op op; (op = ring.reap()) != null; ) {
+            int expected = op.userData == 2 ? Kernel.OK : op.userData == 3 ? Kernel.ERROR : 512;
+            if (op.result != expected) {
+                SysLib.cout("Async I/O test: operation " + op.userData + " returned " + op.result + ".\n");
+                return false;
+            }
+        }
+        for (int i = 0; i < 2; i++) {
+            for (byte b : blocks[i]) {
+                if (b != i + 1) {
+                    SysLib.cout("Async I/O test: block " + i + " read back wrong.\n");
+                    return false;
+                }
+            }
+        }
+        if (SysLib.seek(fd, 0, 1) != 512 * 4) {
+            SysLib.cout("Async I/O test: positional operations moved the seek pointer.\n");
+            return false;
+        }
+        SysLib.close(fd);
+        SysLib.cout("Async I/O test passed.\n");
+        return true;
+    }
+
+    private boolean compressionTest() {
+        String fileName = "compressTestFile";
+        fd = SysLib.open(fileName, "w+");
+        if (SysLib.compress(fd) != 0) {
+            SysLib.cout("Compression test: an empty file could not be compressed.\n");
+            return false;
+        }
+
+        // Append log lines a few at a time, so the last chunk is rewritten as it grows
+        byte[] expected = new byte[20000];
+        int length = 0;
+        for (int line = 0; length < expected.length; line++) {
+            byte[] text = ("2026-10-17 12:00:" + line % 60 + " INFO request " + line * 7 + " served\n").getBytes();
+            int n = Math.min(text.length, expected.length - length);
+            if (SysLib.write(fd, Arrays.copyOf(text, n)) != n) {
+                SysLib.cout("Compression test: append " + line + " was cut short.\n");
+                return false;
+            }
+            System.arraycopy(text, 0, expected, length, n);
+            length += n;
+        }
+        int plain = SysLib.open("plainTestFile", "w+");
+        SysLib.write(plain, buf16);
+        int switched = SysLib.compress(plain);
+        SysLib.close(plain);
+        SysLib.delete("plainTestFile");
+        if (switched == 0) {
+            SysLib.cout("Compression test: a file holding data switched to compression.\n");
+            return false;
+        }
+
+        // Overwrite across a chunk boundary with bytes that do not compress
+        byte[] noise = new byte[3000];
+        new java.util.Random(430).nextBytes(noise);
+        SysLib.seek(fd, 3000, 0);
+        SysLib.write(fd, noise);
+        System.arraycopy(noise, 0, expected, 3000, noise.length);
+
+        // A read inside one chunk, then the whole file after reopening, which reads the chunk map from the disk
+        byte[] part = new byte[100];
+        SysLib.seek(fd, 9000, 0);
+        if (SysLib.read(fd, part) != 100 || !Arrays.equals(part, Arrays.copyOfRange(expected, 9000, 9100))) {
+            SysLib.cout("Compression test: read inside a chunk is wrong.\n");
+            return false;
+        }
+        SysLib.close(fd);
+        fd = SysLib.open(fileName, "r");
+        byte[] whole = new byte[expected.length + 100];
+        int read = SysLib.read(fd, whole);
+        SysLib.close(fd);
+        if (read != expected.length) {
+            SysLib.cout("Compression test: read " + read + " bytes instead of " + expected.length + ".\n");
+            return false;
+        }
+        if (!Arrays.equals(Arrays.copyOf(whole, expected.length), expected)) {
+            SysLib.cout("Compression test: file read back wrong.\n");
+            return false;
+        }
+        SysLib.delete(fileName);
+        SysLib.cout("Compression test passed.\n");
+        return true;
+    }
+
+    // Rewrites two chunks of a compressed file over and over, each time with bytes that do not compress and then
+    // with zeros, so neither fits where it was when it grows back. Were the space a chunk moves out of never used
+    // again, the file would grow by two chunks a round and fill the disk long before the last round.
+    private boolean chunkReuseTest() {
+        fd = SysLib.open("chunkTestFile", "w+");
+        SysLib.compress(fd);
+        byte[] expected = new byte[ChunkMap.CHUNKSIZE * 3];
+        SysLib.write(fd, expected);
+        Random random = new Random(430);
+        byte[] chunk = new byte[ChunkMap.CHUNKSIZE];
+        for (int round = 0; round < 70; round++) {
+            for (int pass = 0; pass < 2; pass++) {
+                for (int c = 1; c <= 2; c++) {
+                    if (pass == 0) random.nextBytes(chunk);
+                    else Arrays.fill(chunk, (byte) 0);
+                    SysLib.seek(fd, c * chunk.length, 0);
+                    if (SysLib.write(fd, chunk) != chunk.length) {
+                        SysLib.cout("Chunk Reuse test: the disk filled up in round " + round + ".\n");
+                        SysLib.close(fd);
+                        SysLib.delete("chunkTestFile");
+                        return false;
+                    }
+                    System.arraycopy(chunk, 0, expected, c * chunk.length, chunk.length);
+                }
+            }
+        }
+        SysLib.close(fd);
+        fd = SysLib.open("chunkTestFile", "r");
+        byte[] readBack = new byte[expected.length];
+        SysLib.read(fd, readBack);
+        SysLib.close(fd);
+        SysLib.delete("chunkTestFile");
+        if (!Arrays.equals(readBack, expected)) {
+            SysLib.cout("Chunk Reuse test: the file reads back wrong.\n");
+            return false;
+        }
+        SysLib.cout("Chunk reuse test passed.\n");
+        return true;
+    }
+
+    private boolean cacheResizeTest() {
+        String fileName = "resizeTestFile";
+        int pages = SysLib.cachesize(0);
+        byte[] expected = new byte[40 * 512];
+        for (int i = 0; i < expected.length; i++) expected[i] = (byte) (i * 13 + i / 512);
+        fd = SysLib.open(fileName, "w+");
+        SysLib.write(fd, expected);
+
+        // Grow while the file's last blocks are dirty in the cache, overwrite some, then shrink below them
+        if (SysLib.cachesize(pages + 32) != pages + 32) {
+            SysLib.cout("Cache Resize test: the cache did not grow.\n");
+            return false;
+        }
+        for (int i = 0; i < 4096; i++) expected[i] = (byte) (i * 7);
+        SysLib.seek(fd, 0, 0);
+        SysLib.write(fd, Arrays.copyOf(expected, 4096));
+        int shrunk = SysLib.cachesize(2);
+        if (shrunk < 1 || shrunk > 2 + 16) {
+            SysLib.cout("Cache Resize test: the cache did not shrink.\n");
+            return false;
+        }
+        byte[] whole = new byte[expected.length];
+        SysLib.seek(fd, 0, 0);
+        SysLib.read(fd, whole);
+        SysLib.close(fd);
+        SysLib.cachesize(pages);
+        if (!Arrays.equals(whole, expected)) {
+            SysLib.cout("Cache Resize test: file read back wrong.\n");
+            return false;
+        }
+        SysLib.delete(fileName);
+        SysLib.cout("Cache resize test passed.\n");
+        return true;
+    }
+
+    // Fills the disk while a file's data waits for its blocks, as it does with -DthreadOS.fs.write=behind, then writes
+    // more: the other writes must leave the waiting data its space, so closing the file loses none of it.
+    private boolean diskFullTest() {
+        int blockSize = BlockIO.blockSize();
+        fd = SysLib.open("fullGap", "w");
+        SysLib.write(fd, new byte[blockSize * 30]);
+        SysLib.close(fd);
+
+        // Compressed files of noise fill the rest; they never go through write-behind
+        Random random = new Random(430);
+        byte[] noise = new byte[4 * ChunkMap.CHUNKSIZE];
+        int fills = 0;
+        boolean full = false;
+        while (!full && fills < 20) {
+            int fill = SysLib.open("fullFill" + fills++, "w");
+            SysLib.compress(fill);
+            do {
+                random.nextBytes(noise);
+            } while (SysLib.write(fill, noise) == noise.length);
+            full = SysLib.seek(fill, 0, 2) < ChunkMap.maxFileSize(blockSize);
+            SysLib.close(fill);
+        }
+        if (!full) {
+            SysLib.cout("Disk Full test: the disk never filled up.\n");
+            return false;
+        }
+
+        SysLib.delete("fullGap"); // 30 blocks free again
+        byte[] expected = new byte[blockSize * 20];
+        for (int i = 0; i < expected.length; i++) expected[i] = (byte) (i * 3 + i / blockSize);
+        fd = SysLib.open("fullHeld", "w");
+        int written = SysLib.write(fd, expected);
+        int last = SysLib.open("fullLast", "w");
+        SysLib.compress(last);
+        for (int i = 0; i < 2; i++) {
+            random.nextBytes(noise);
+            SysLib.write(last, noise); // Twice what is free
+        }
+        SysLib.close(last);
+        SysLib.close(fd);
+
+        fd = SysLib.open("fullHeld", "r");
+        int size = SysLib.seek(fd, 0, 2);
+        SysLib.seek(fd, 0, 0);
+        byte[] readBack = new byte[expected.length];
+        SysLib.read(fd, readBack);
+        SysLib.close(fd);
+        SysLib.delete("fullHeld");
+        SysLib.delete("fullLast");
+        for (int i = 0; i < fills; i++) SysLib.delete("fullFill" + i);
+        if (written != expected.length || size != expected.length || !Arrays.equals(readBack, expected)) {
+            SysLib.cout("Disk Full test: " + written + " bytes written, " + size + " kept.\n");
+            return false;
+        }
+        SysLib.cout("Disk full test passed.\n");
+        return true;
+    }
+
+    // Writes a file and syncs it while it is still open, then mounts the disk again, as ThreadOS would after a restart:
+    // the new file system must find the file and all of its data. With -DthreadOS.fs.write=behind, the first half is
+    // left to the write-behind timer, which must give it blocks without a close or sync.
+    private boolean remountTest() {
+        int blockSize = BlockIO.blockSize();
+        byte[] expected = new byte[blockSize * 8];
+        for (int i = 0; i < expected.length; i++) expected[i] = (byte) (i * 7 + i / blockSize);
+        byte[] half = Arrays.copyOf(expected, expected.length / 2);
+        fd = SysLib.open("remount", "w");
+        SysLib.sync(); // The directory on disk now lists the file
+
+        SysLib.write(fd, half);
+        if ("behind".equals(System.getProperty(Kernel.FS_WRITE))) {
+            SysLib.sleep(FileSystem.FLUSH_AGE * 2);
+            byte[] timed = readRemounted("remount");
+            if (timed == null || !Arrays.equals(timed, half)) {
+                SysLib.cout("Remount test: the timer left " + (timed == null ? 0 : timed.length) + " bytes on disk.\n");
+                SysLib.close(fd);
+                SysLib.delete("remount");
+                return false;
+            }
+        }
+        SysLib.write(fd, Arrays.copyOfRange(expected, half.length, expected.length));
+        SysLib.sync();
+        byte[] synced = readRemounted("remount");
+        SysLib.close(fd);
+        SysLib.delete("remount");
+        if (synced == null || !Arrays.equals(synced, expected)) {
+            SysLib.cout("Remount test: " + (synced == null ? 0 : synced.length) + " bytes found after sync.\n");
+            return false;
+        }
+        SysLib.cout("Remount test passed.\n");
+        return true;
+    }
+
+    // Mounts the disk again as a new FileSystem, sized from its superblock, and returns the whole of the file name as
+    // that file system reads it, or null if it finds no such file. Blocks are read as the kernel's file system reads
+    // them, so in cached mode what the cache will write back counts as on disk. (SysLib.flush would sync first.)
+    private byte[] readRemounted(String name) {
+        byte[] superBlock = new byte[BlockIO.blockSize()];
+        BlockIO.read(0, superBlock);
+        int totalBlocks = SysLib.bytes2int(superBlock, 0);
+        int blockSize = SysLib.bytes2int(superBlock, 24);
+        return readMounted(new FileSystem(totalBlocks * (blockSize / Disk.blockSize), blockSize), name);
+    }
+
+    // Serves the same queue of requests, a sync among them, with the head over block 40 under each scheduling policy
+    // and checks the order they come out in. A sync sits under the head, so every policy but fcfs takes it first.
+    private boolean diskSchedulerTest() {
+        int[] queued = { 50, 10, 90, -1, 30, 70 };
+        String[] policies = { DiskScheduler.FCFS, DiskScheduler.SSTF, DiskScheduler.SCAN, DiskScheduler.CLOOK };
+        int[][] orders = {
+            { 50, 10, 90, -1, 30, 70 },
+            { -1, 50, 70, 90, 30, 10 }, // The tie between 30 and 50 goes up
+            { -1, 50, 70, 90, 30, 10 },
+            { -1, 50, 70, 90, 10, 30 }, // Back to the lowest block after the highest
+        };
+        for (int p = 0; p < policies.length; p++) {
+            DiskScheduler scheduler = DiskScheduler.forName(policies[p]);
+            ArrayList<Disk.Request> queue = new ArrayList<>();
+            for (int blockId : queued) {
+                queue.add(new Disk.Request(blockId < 0 ? Disk.SYNC : Disk.READ, blockId, null, null, null));
+            }
+            int head = 40;
+            int[] served = new int[queued.length];
+            for (int i = 0; i < served.length; i++) {
+                Disk.Request request = queue.remove(scheduler.next(queue, head));
+                served[i] = request.blockId;
+                if (request.blockId >= 0) head = request.blockId;
+            }
+            if (!Arrays.equals(served, orders[p])) {
+                SysLib.cout("Disk Scheduler test: " + policies[p] + " served " + Arrays.toString(served) + ".\n");
+                return false;
+            }
+        }
+        SysLib.cout("Disk scheduler test passed.\n");
+        return true;
+    }
+
+    // Eight threads each write and read back their own disk block at once, one block at a time and as a vectored
+    // request of two, so their requests are queued together and served in any order. Each must wake when its own
+    // request is served, not another's: a thread woken early reads its buffer before the disk has filled it. The
+    // blocks are sectors near the end of a disk just formatted, which no file uses.
+    private boolean diskRequestTest() {
+        final int threads = 8;
+        final int rounds = 40;
+        final int firstBlock = 900;
+        int[] mismatches = new int[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread(() -> {
+                int block = firstBlock + id * 2;
+                byte[][] written = { new byte[Disk.blockSize], new byte[Disk.blockSize] };
+                byte[][] read = { new byte[Disk.blockSize], new byte[Disk.blockSize] };
+                for (int round = 0; round < rounds; round++) {
+                    Arrays.fill(written[0], (byte) (id * rounds + round));
+                    Arrays.fill(written[1], (byte) ~(id * rounds + round));
+                    if (round % 2 == 0) {
+                        SysLib.rawwrite(block, written[0]);
+                        SysLib.rawwrite(block + 1, written[1]);
+                        SysLib.rawread(block, read[0]);
+                        SysLib.rawread(block + 1, read[1]);
+                    } else {
+                        SysLib.rawwritev(new int[] { block, block + 1 }, written);
+                        SysLib.rawreadv(new int[] { block, block + 1 }, read);
+                    }
+                    if (!Arrays.equals(read[0], written[0]) || !Arrays.equals(read[1], written[1])) mismatches[id]++;
+                }
+            });
+            workers[t].start();
+        }
+        int wrong = 0;
+        for (int t = 0; t < threads; t++) {
+            try {
+                workers[t].join(60000);
+            } catch (InterruptedException e) {
+                return false;
+            }
+            if (workers[t].isAlive()) {
+                SysLib.cout("Disk Request test: thread " + t + " was never woken.\n");
+                return false;
+            }
+            wrong += mismatches[t];
+        }
+        if (wrong > 0) {
+            SysLib.cout("Disk Request test: " + wrong + " reads returned before their data.\n");
+            return false;
+        }
+        SysLib.cout("Disk request test passed.\n");
+        return true;
+    }
+
+    // Writes blocks through a mapped disk image of a scratch file, syncs it, and opens the file again both mapped and
+    // read into the heap: each must hold what was written, and a block written through the heap image and synced
+    // must show up in the file mapped once more.
+    private boolean mappedImageTest() {
+        String fileName = "MYTESTDISK";
+        new java.io.File(fileName).delete();
+        byte[][] expected = new byte[16][Disk.blockSize];
+        DiskImage mapped = DiskImage.open(DiskImage.MAPPED, fileName, expected.length);
+        if (mapped == null || mapped.getBlocks() != expected.length) {
+            SysLib.cout("Mapped Image test: the scratch file could not be mapped.\n");
+            return false;
+        }
+        for (int block : new int[] { 0, 3, 4, 15 }) {
+            Arrays.fill(expected[block], (byte) (block + 1));
+            mapped.write(block, expected[block]);
+        }
+        mapped.sync();
+        boolean matches = imageHolds(DiskImage.open(DiskImage.MAPPED, fileName, expected.length), expected);
+        DiskImage heap = DiskImage.open(DiskImage.HEAP, fileName, expected.length);
+        matches &= imageHolds(heap, expected);
+        Arrays.fill(expected[7], (byte) 8);
+        heap.write(7, expected[7]);
+        heap.sync();
+        matches &= imageHolds(DiskImage.open(DiskImage.MAPPED, fileName, expected.length), expected);
+        new java.io.File(fileName).delete();
+        if (!matches) {
+            SysLib.cout("Mapped Image test: an image of the file does not hold what was written.\n");
+            return false;
+        }
+        SysLib.cout("Mapped image test passed.\n");
+        return true;
+    }
+
+    // Syncs a heap image of a scratch file after writing some of its blocks, then the DISK after writing some unused
+    // sectors: each sync must write the blocks written since the last one and no others. A sync of the DISK with
+    // nothing new written sets the bytes the file system's own metadata costs, which the next sync adds to.
+    private boolean syncBytesTest() {
+        String fileName = "MYTESTDISK";
+        new java.io.File(fileName).delete();
+        DiskImage heap = DiskImage.open(DiskImage.HEAP, fileName, 16);
+        if (heap == null) {
+            SysLib.cout("Sync Bytes test: the scratch file could not be opened.\n");
+            return false;
+        }
+        long first = heap.sync(); // a new file is written whole
+        byte[] block = new byte[Disk.blockSize];
+        for (int b : new int[] { 2, 3, 9 }) {
+            Arrays.fill(block, (byte) b);
+            heap.write(b, block);
+        }
+        long written = heap.sync();
+        long again = heap.sync();
+        new java.io.File(fileName).delete();
+        if (first != 16L * Disk.blockSize || written != 3L * Disk.blockSize || again != 0) {
+            SysLib.cout("Sync Bytes test: the image synced " + first + ", " + written + " and " + again + " bytes.\n");
+            return false;
+        }
+
+        int[] counts = new int[8];
+        SysLib.sync();
+        SysLib.iostat(counts, true);
+        SysLib.sync();
+        SysLib.iostat(counts, true);
+        long metadata = counts[7];
+        for (int b : new int[] { 900, 901, 905 }) {
+            Arrays.fill(block, (byte) b);
+            SysLib.rawwrite(b, block);
+        }
+        SysLib.sync();
+        SysLib.iostat(counts, true);
+        if (metadata >= 1000L * Disk.blockSize || counts[7] != metadata + 3L * Disk.blockSize) {
+            SysLib.cout("Sync Bytes test: syncs wrote " + metadata + " bytes, then " + counts[7] + " after 3 blocks.\n");
+            return false;
+        }
+        SysLib.cout("Sync bytes test passed.\n");
+        return true;
+    }
+
+    // Stripes three scratch images of 10, 11 and 12 blocks in units of 2 blocks, writes every logical block as one
+    // vectored request and reads each back alone. The device must be 30 blocks, the smallest image three times over,
+    // and once synced, block k of image d must hold logical block ((k / 2) * 3 + d) * 2 + k % 2.
+    private boolean stripeMappingTest() {
+        final int unit = 2;
+        DiskImage[] images = new DiskImage[3];
+        for (int d = 0; d < images.length; d++) {
+            new java.io.File("MYTESTDISK" + d).delete();
+            images[d] = DiskImage.open(DiskImage.HEAP, "MYTESTDISK" + d, 10 + d);
+        }
+        StripedDisk striped = new StripedDisk(images, unit, 1000);
+        striped.setModel(DiskModel.forName(DiskModel.ZERO, null));
+        striped.start();
+        int blocks = striped.getDiskSize();
+        int[] ids = new int[blocks];
+        byte[][] written = new byte[blocks][Disk.blockSize];
+        for (int b = 0; b < blocks; b++) {
+            ids[b] = b;
+            Arrays.fill(written[b], (byte) (b + 1));
+        }
+        boolean matches = blocks == 30 && striped.read(blocks, new byte[Disk.blockSize]) == null;
+        if (matches) {
+            striped.writev(ids, written).waitServed();
+            byte[] block = new byte[Disk.blockSize];
+            for (int b = 0; b < blocks; b++) {
+                striped.read(b, block).waitServed();
+                matches &= Arrays.equals(block, written[b]);
+            }
+            striped.sync().waitServed();
+            for (int d = 0; d < images.length && matches; d++) {
+                DiskImage image = DiskImage.open(DiskImage.HEAP, "MYTESTDISK" + d, 10 + d);
+                for (int k = 0; k < 10; k++) {
+                    image.read(k, block);
+                    matches &= Arrays.equals(block, written[((k / unit) * images.length + d) * unit + k % unit]);
+                }
+            }
+        }
+        for (int d = 0; d < images.length; d++) {
+            new java.io.File("MYTESTDISK" + d).delete();
+        }
+        if (!matches) {
+            SysLib.cout("Stripe Mapping test: a device of " + blocks + " blocks did not put each block in its place.\n");
+            return false;
+        }
+        SysLib.cout("Stripe mapping test passed.\n");
+        return true;
+    }
+
+    // Submits, as one batch on a ring of 4, operations that fail or come up short: a read of a write-only file, a
+    // write to a read-only one, a read running past the end of a 1000-byte file and one starting beyond it. Each must
+    // complete with what the synchronous call returns, and the full ring must refuse a fifth. Then two reads of 600
+    // bytes at the seek pointer, submitted one after the other, must return 600 and 400 bytes and move it to the end.
+    private boolean ioRingTest() {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) (i * 7);
+        int writer = SysLib.open("ringFile", "w");
+        SysLib.write(writer, data);
+        int reader = SysLib.open("ringFile", "r");
+        String failure = ioRingFailure(writer, reader, data);
+        SysLib.close(reader);
+        SysLib.close(writer);
+        if (failure != null) {
+            SysLib.cout("IoRing test: " + failure + ".\n");
+            return false;
+        }
+        SysLib.cout("IoRing test passed.\n");
+        return true;
+    }
+
+    // Runs the operations of ioRingTest on the two descriptors of a file holding data; returns what went wrong, or
+    // null if nothing did.
+    private String ioRingFailure(int writer, int reader, byte[] data) {
+        IoRing ring = new IoRing(4);
+        byte[] tail = new byte[512];
+        ring.prepRead(writer, new byte[512], 0, 0);
+        ring.prepWrite(reader, new byte[512], 0, 1);
+        ring.prepRead(reader, tail, 900, 2);
+        ring.prepRead(reader, new byte[512], 5000, 3);
+        if (ring.prepRead(reader, new byte[512], 0, 4)) return "a full ring took a fifth operation";
+        if (SysLib.iowait(ring, 4) != 4) return "the operations did not all complete";
+        int[] expected = { Kernel.ERROR, Kernel.ERROR, 100, 0 };
+        for (IoRing.Op op; (op = ring.reap()) != null; ) {
+            if (op.result != expected[(int) op.userData]) return "operation " + op.userData + " returned " + op.result;
+        }
+        if (!Arrays.equals(Arrays.copyOf(tail, 100), Arrays.copyOfRange(data, 900, 1000))) {
+            return "the read past the end returned the wrong bytes";
+        }
+        if (SysLib.iowait(ring, 1) != 0) return "an empty ring had completions";
+
+        for (int expectedBytes : new int[] { 600, 400 }) {
+            ring.prepRead(reader, new byte[600], IoRing.CURRENT, expectedBytes);
+            IoRing.Op op = SysLib.iowait(ring, 1) == 1 ? ring.reap() : null;
+            if (op == null || op.result != expectedBytes) {
+                return "a read at the seek pointer returned " + (op == null ? "nothing" : op.result + " bytes");
+            }
+        }
+        if (SysLib.seek(reader, 0, 1) != data.length) return "reads at the seek pointer did not move it";
+        return null;
+    }
+
+    // Starts a new stats interval on a synced disk, then writes 3 unused sectors one at a time, reads them back as one
+    // vectored request and reads one of them again. The report must count exactly those requests and their bytes,
+    // and after a reset it must count none.
+    private boolean statsTest() {
+        SysLib.sync();
+        SysLib.stats(true);
+        byte[][] blocks = new byte[3][Disk.blockSize];
+        int[] ids = { 910, 911, 912 };
+        for (int i = 0; i < ids.length; i++) {
+            SysLib.rawwrite(ids[i], blocks[i]);
+        }
+        SysLib.rawreadv(ids, blocks);
+        SysLib.rawread(ids[0], blocks[0]);
+        String report = SysLib.stats(true);
+        String[] expected = {
+            "write: 3 requests, " + 3 * Disk.blockSize + " bytes",
+            "readv: 1 requests, " + 3 * Disk.blockSize + " bytes",
+            "read: 1 requests, " + Disk.blockSize + " bytes",
+        };
+        for (String line : expected) {
+            if (report == null || !report.contains("\n" + line + "\n")) {
+                SysLib.cout("Stats test: the report lacks \"" + line + "\":\n" + report);
+                return false;
+            }
+        }
+        report = SysLib.stats(false);
+        if (report == null || report.contains(" requests, ")) {
+            SysLib.cout("Stats test: requests were still counted after a reset:\n" + report);
+            return false;
+        }
+        SysLib.cout("Stats test passed.\n");
+        return true;
+    }
+
+    // Returns true if image holds exactly the blocks of expected.
+    private boolean imageHolds(DiskImage image, byte[][] expected) {
+        if (image == null || image.getBlocks() != expected.length) return false;
+        byte[] block = new byte[Disk.blockSize];
+        for (int i = 0; i < expected.length; i++) {
+            image.read(i, block);
+            if (!Arrays.equals(block, expected[i])) return false;
+        }
+        return true;
+    }
+
+    // Formats the disk with blocks of another size than it has, 1024 bytes or else 2048, and writes and reads back a
+    // file in pieces that neither start nor end on block boundaries. The disk is formatted as before afterwards.
+    private boolean blockSizeTest() {
+        int blockSize = BlockIO.blockSize() == 1024 ? 2048 : 1024;
+        if (SysLib.format(files, blockSize) != Kernel.OK || BlockIO.blockSize() != blockSize) {
+            SysLib.cout("Block Size test: could not format with " + blockSize + "-byte blocks.\n");
+            SysLib.format(files);
+            return false;
+        }
+        byte[] expected = new byte[blockSize * 12 + 123];
+        for (int i = 0; i < expected.length; i++) expected[i] = (byte) (i * 11 + i / blockSize);
+        fd = SysLib.open("sizedFile", "w");
+        for (int start = 0; start < expected.length; start += 700) {
+            SysLib.write(fd, Arrays.copyOfRange(expected, start, Math.min(expected.length, start + 700)));
+        }
+        SysLib.close(fd);
+
+        fd = SysLib.open("sizedFile", "r");
+        int size = SysLib.seek(fd, 0, 2);
+        byte[] readBack = new byte[expected.length];
+        for (int start = 0; start < readBack.length; start += 300) {
+            SysLib.seek(fd, start, 0);
+            byte[] piece = new byte[Math.min(300, readBack.length - start)];
+            SysLib.read(fd, piece);
+            System.arraycopy(piece, 0, readBack, start, piece.length);
+        }
+        SysLib.close(fd);
+        SysLib.format(files);
+        if (size != expected.length || !Arrays.equals(readBack, expected)) {
+            SysLib.cout("Block Size test: " + size + " bytes read back wrong with " + blockSize + "-byte blocks.\n");
+            return false;
+        }
+        SysLib.cout("Block size test passed.\n");
+        return true;
+    }
+
+    // Writes a disk image the way the file system wrote them before extents: 512-byte blocks, inodes with 11 direct
+    // pointers and an indirect block, and the head of an on-disk free list in the superblock. Mounting it must convert
+    // it to the current format (version 2) with every file intact, and new files must not land on the old ones'
+    // blocks. The kernel's file system is formatted again afterwards.
+    private boolean pointerFormatTest() {
+        final int oldFiles = 16;
+        byte[] superBlock = new byte[BlockIO.blockSize()];
+        BlockIO.read(0, superBlock);
+        int diskBlocks = SysLib.bytes2int(superBlock, 0) * (SysLib.bytes2int(superBlock, 24) / Disk.blockSize);
+        BlockIO.setBlockSize(Disk.blockSize); // As the mount sets it to read the superblock
+
+        // The directory, a small file whose blocks are out of order, and one that needs its indirect block
+        Directory oldDirectory = new Directory(oldFiles);
+        oldDirectory.ialloc("small");
+        oldDirectory.ialloc("big");
+        byte[] dirData = oldDirectory.directory2bytes();
+        byte[] small = new byte[Disk.blockSize * 3 - 10];
+        byte[] big = new byte[Disk.blockSize * 16 - 100];
+        for (int i = 0; i < small.length; i++) small[i] = (byte) (i * 5 + 1);
+        for (int i = 0; i < big.length; i++) big[i] = (byte) (i * 3 + i / Disk.blockSize);
+
+        int next = 2 + oldFiles * Inode.iNodeSize / Disk.blockSize; // The old format's first data block
+        byte[] inodes = new byte[Disk.blockSize];
+        next = writeOldFile(inodes, 0, dirData, next, false);
+        next = writeOldFile(inodes, 1, small, next, true);
+        next = writeOldFile(inodes, 2, big, next, false);
+        for (int i = 3; i < oldFiles; i++) writeOldInode(inodes, i, 0, (short) 0, new short[0], (short) -1);
+        BlockIO.write(1, inodes);
+        Arrays.fill(superBlock, (byte) 0);
+        SysLib.int2bytes(diskBlocks, superBlock, 0);
+        SysLib.int2bytes(oldFiles, superBlock, 4);
+        SysLib.int2bytes(next, superBlock, 8); // Free list head; no format version or block size yet
+        BlockIO.write(0, superBlock);
+
+        FileSystem mounted = new FileSystem(diskBlocks, Disk.blockSize);
+        FileTableEntry added = mounted.open("added", "w");
+        mounted.write(added, new byte[Disk.blockSize * 20]);
+        mounted.close(added);
+        byte[] smallRead = readMounted(mounted, "small");
+        byte[] bigRead = readMounted(mounted, "big");
+        BlockIO.read(0, superBlock);
+        int version = SysLib.bytes2int(superBlock, 12);
+        SysLib.format(files); // Back to the kernel's file system
+
+        if (version != 2 || !Arrays.equals(smallRead, small) || !Arrays.equals(bigRead, big)) {
+            SysLib.cout("Pointer format test: version " + version + ", small " + Arrays.equals(smallRead, small)
+                        + ", big " + Arrays.equals(bigRead, big) + ".\n");
+            return false;
+        }
+        SysLib.cout("Pointer format test passed.\n");
+        return true;
+    }
+
+    // Writes data to the blocks from next on, reversing the last two if scrambled, and its inode iNumber into the
+    // inode block, the first 11 blocks as direct pointers and the rest through an indirect block. Returns the next
+    // unused block.
+    private int writeOldFile(byte[] inodes, int iNumber, byte[] data, int next, boolean scrambled) {
+        int blocks = (data.length + Disk.blockSize - 1) / Disk.blockSize;
+        short[] pointers = new short[blocks];
+        for (int b = 0; b < blocks; b++) pointers[b] = (short) (next + b);
+        if (scrambled && blocks > 1) {
+            pointers[blocks - 1] = (short) (next + blocks - 2);
+            pointers[blocks - 2] = (short) (next + blocks - 1);
+        }
+        byte[] block = new byte[Disk.blockSize];
+        for (int b = 0; b < blocks; b++) {
+            Arrays.fill(block, (byte) 0);
+            System.arraycopy(data, b * block.length, block, 0, Math.min(block.length, data.length - b * block.length));
+            BlockIO.write(pointers[b], block);
+        }
+        next += blocks;
+        short indirect = -1;
+        if (blocks > 11) {
+            indirect = (short) next++;
+            Arrays.fill(block, (byte) -1); // Unused pointers are -1
+            for (int b = 11; b < blocks; b++) SysLib.short2bytes(pointers[b], block, (b - 11) * 2);
+            BlockIO.write(indirect, block);
+        }
+        writeOldInode(inodes, iNumber, data.length, (short) 1, pointers, indirect);
+        return next;
+    }
+
+    // Lays out one inode as the pointer format did: length, count, flag, 11 direct pointers and the indirect one.
+    private void writeOldInode(byte[] inodes, int iNumber, int length, short flag, short[] pointers, short indirect) {
+        int offset = iNumber * Inode.iNodeSize;
+        SysLib.int2bytes(length, inodes, offset);
+        SysLib.short2bytes((short) 0, inodes, offset + 4);
+        SysLib.short2bytes(flag, inodes, offset + 6);
+        for (int d = 0; d < 11; d++) {
+            SysLib.short2bytes(d < pointers.length ? pointers[d] : (short) -1, inodes, offset + 8 + d * 2);
+        }
+        SysLib.short2bytes(indirect, inodes, offset + 30);
+    }
+
+    // Reads the whole of the file name from a file system other than the kernel's, or returns null if there is none.
+    private byte[] readMounted(FileSystem fileSystem, String name) {
+        FileTableEntry ftEnt = fileSystem.open(name, "r");
+        if (ftEnt == null) return null;
+        byte[] data = new byte[fileSystem.fsize(ftEnt)];
+        fileSystem.read(ftEnt, data);
+        fileSystem.close(ftEnt);
+        return data;
+    }
+
+    // Seeks to reads offsets spread over the first three blocks of the file, reading a block's worth of bytes at each
+    // unless buffer is null, and returns the bytes this thread allocated meanwhile. Most offsets are unaligned, so
+    // most reads span two blocks.
+    private long readLoop(int reads, byte[] buffer) {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < reads; i++) {
+            SysLib.seek(fd, (i * 200) % (BlockIO.blockSize() * 3), 0);
+            if (buffer != null) SysLib.read(fd, buffer);
+        }
+        return threads.getThreadAllocatedBytes(tid) - before;
+    }
+
 
 }
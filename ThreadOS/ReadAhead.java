@@ -0,0 +1,50 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The ReadAhead class is a background thread that pulls blocks into the buffer cache before a sequential reader asks
+ * for them. FileSystem.read hands it the block numbers just past what a reader consumed, and it feeds them to the
+ * cache as one vectored request while the reader is busy with the data it already has. Requests that pile up while
+ * the disk is busy are dropped rather than queued without limit, since a late read-ahead is worth nothing.
+ */
+
+import java.util.LinkedList;
+
+class ReadAhead extends Thread {
+    private final static int MAXPENDING = 8; // block lists waiting to be read ahead
+
+    private final LinkedList<int[]> pending = new LinkedList<>();
+
+    ReadAhead() {
+        setDaemon(true); // never keeps ThreadOS from shutting down
+    }
+
+    // Queues a list of blocks to read ahead; returns false if the queue is full and the list was dropped.
+    synchronized boolean request(int[] blockNumbers) {
+        if (pending.size() >= MAXPENDING) return false;
+        pending.addLast(blockNumbers);
+        notify();
+        return true;
+    }
+
+    private synchronized int[] next() {
+        while (pending.isEmpty()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+        return pending.removeFirst();
+    }
+
+    public void run() {
+        int[] blockNumbers;
+        while ((blockNumbers = next()) != null) {
+            BlockIO.prefetch(blockNumbers);
+        }
+    }
+}
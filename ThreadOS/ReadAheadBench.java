@@ -0,0 +1,74 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * ReadAheadBench measures what read-ahead buys a scan job. It writes a file, empties the cache, and reads it front to
+ * back one block per read, spending a little time on each block the way a log tailer would, then does the same at
+ * random offsets. It prints the elapsed time and the read-ahead counters (blocks read ahead, hits, waste) of each
+ * scan. Compare -DthreadOS.fs.readahead=0 against the default window.
+ * Usage: l ReadAheadBench [blocks] [ms of work per block]
+ */
+
+import java.util.Random;
+
+class ReadAheadBench extends Thread {
+    private final static int DEFAULTBLOCKS = 48;
+    private final static int DEFAULTWORK = 20;
+    private final int blocks;
+    private final int work;
+
+    public ReadAheadBench(String args[]) {
+        blocks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTBLOCKS;
+        work = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULTWORK;
+    }
+
+    public ReadAheadBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.format(48);
+        byte[] data = new byte[blocks * 512];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+        int fd = SysLib.open("scan", "w+");
+        SysLib.write(fd, data);
+        SysLib.close(fd);
+
+        byte[] block = new byte[512];
+        SysLib.flush();
+        SysLib.iostat(new int[7], true);
+        fd = SysLib.open("scan", "r");
+        long start = System.currentTimeMillis();
+        while (SysLib.read(fd, block) > 0) {
+            SysLib.sleep(work);
+        }
+        report("sequential", start);
+        SysLib.close(fd);
+
+        Random random = new Random(430);
+        SysLib.flush();
+        SysLib.iostat(new int[7], true);
+        fd = SysLib.open("scan", "r");
+        start = System.currentTimeMillis();
+        for (int i = 0; i < blocks; i++) {
+            SysLib.seek(fd, random.nextInt(blocks) * 512, 0);
+            SysLib.read(fd, block);
+            SysLib.sleep(work);
+        }
+        report("random", start);
+        SysLib.close(fd);
+        SysLib.exit();
+    }
+
+    // Prints and resets the counters for one scan.
+    private void report(String scan, long start) {
+        long elapsed = System.currentTimeMillis() - start;
+        int[] counts = new int[7];
+        SysLib.iostat(counts, true);
+        SysLib.cout(scan + " scan of " + blocks + " blocks: " + elapsed + " ms, " + counts[0] + " block reads, "
+            + counts[4] + " read ahead, " + counts[5] + " hits, " + counts[6] + " wasted\n");
+    }
+}
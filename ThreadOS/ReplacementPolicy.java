@@ -0,0 +1,570 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * A ReplacementPolicy decides which of the Cache's pages gives up its block when a missing block needs one. The
+ * Cache tells it about every page it hands a block to and every use of a cached block, and asks it for a victim only
+ * when no page is free. The policies:
+ *   clock    - second chance, the Cache's original policy; the hand skips pages used since it last passed them.
+ *   lru      - least recently used. A scan longer than the cache pushes out everything, hot or not.
+ *   2q       - new blocks wait in a small FIFO and only reach the main LRU list if they are used again after
+ *              leaving it, which a remembered (ghost) list of recently dropped blocks detects, so a scan passes
+ *              through the FIFO without touching the main list (Johnson and Shasha).
+ *   arc      - adaptive replacement; one LRU list of blocks used once and one of blocks used again, with ghost lists
+ *              of what each recently lost, and a target size for the first list that moves toward whichever list's
+ *              ghosts are being asked for (Megiddo and Modha).
+ *   clockpro - CLOCK-Pro; hot and cold pages on one clock. New pages are cold and on test, and are remembered for a
+ *              while after eviction; a page used again during its test becomes hot, and how many cold pages to keep
+ *              adapts to how often that happens (Jiang, Chen and Zhang).
+ * Every operation costs O(1) amortized. Policies are not thread safe; the Cache guards its policy.
+ */
+
+import java.util.Arrays;
+
+abstract class ReplacementPolicy {
+    public final static String CLOCK = "clock";
+    public final static String LRU = "lru";
+    public final static String TWOQ = "2q";
+    public final static String ARC = "arc";
+    public final static String CLOCKPRO = "clockpro";
+    public final static String[] NAMES = { CLOCK, LRU, TWOQ, ARC, CLOCKPRO };
+
+    // Returns the policy with the given name, or null if there is none.
+    static ReplacementPolicy forName(String name) {
+        switch (name) {
+            case CLOCK: return new Clock();
+            case LRU: return new Lru();
+            case TWOQ: return new TwoQ();
+            case ARC: return new Arc();
+            case CLOCKPRO: return new ClockPro();
+            default: return null;
+        }
+    }
+
+    // Returns the name forName knows this policy by.
+    abstract String getName();
+
+    // Starts over with pages empty pages; also what the Cache calls when it drops every block.
+    abstract void init(int pages);
+
+    // A thread used page's block.
+    abstract void used(int page);
+
+    // page now holds blockId, just read in or written.
+    abstract void admitted(int page, int blockId);
+
+    // Returns the page whose block makes way for blockId, never one given out by victim and not yet admitted again.
+    // Only called when no page is free and some page has been admitted since it was last given out.
+    abstract int victim(int blockId);
+
+    private static class Clock extends ReplacementPolicy {
+        private boolean[] reference; // used since the hand last passed
+        private boolean[] out; // not admitted since it was empty or given out by victim
+        private int hand;
+
+        String getName() {
+            return CLOCK;
+        }
+
+        void init(int pages) {
+            if (reference != null && reference.length == pages) { // dropping every block leaves the hand where it is
+                Arrays.fill(reference, false);
+                Arrays.fill(out, true);
+                return;
+            }
+            reference = new boolean[pages];
+            out = new boolean[pages];
+            Arrays.fill(out, true);
+            hand = pages - 1; // the last page counts as the previous victim
+        }
+
+        void used(int page) {
+            reference[page] = true;
+        }
+
+        void admitted(int page, int blockId) {
+            reference[page] = true;
+            out[page] = false;
+        }
+
+        int victim(int blockId) {
+            while (true) {
+                hand = (hand + 1) % reference.length;
+                if (out[hand]) continue;
+                if (!reference[hand]) {
+                    out[hand] = true;
+                    return hand;
+                }
+                reference[hand] = false;
+            }
+        }
+    }
+
+    // Doubly linked lists threaded through shared arrays. A node is on at most one list at a time, and moving it
+    // between lists allocates nothing.
+    private static class Lists {
+        private final int[] prev;
+        private final int[] next;
+        private final int[] owner; // list each node is on, -1 = none
+        private final int[] head; // most recent end
+        private final int[] tail; // least recent end
+        private final int[] size;
+
+        Lists(int nodes, int lists) {
+            prev = new int[nodes];
+            next = new int[nodes];
+            owner = new int[nodes];
+            Arrays.fill(owner, -1);
+            head = new int[lists];
+            tail = new int[lists];
+            Arrays.fill(head, -1);
+            Arrays.fill(tail, -1);
+            size = new int[lists];
+        }
+
+        int size(int list) {
+            return size[list];
+        }
+
+        // Returns the least recent node of list, or -1 if it is empty.
+        int last(int list) {
+            return tail[list];
+        }
+
+        int owner(int node) {
+            return owner[node];
+        }
+
+        void pushFront(int list, int node) {
+            prev[node] = -1;
+            next[node] = head[list];
+            if (head[list] >= 0) {
+                prev[head[list]] = node;
+            } else {
+                tail[list] = node;
+            }
+            head[list] = node;
+            owner[node] = list;
+            size[list]++;
+        }
+
+        void remove(int node) {
+            int list = owner[node];
+            if (list < 0) return;
+            if (prev[node] >= 0) {
+                next[prev[node]] = next[node];
+            } else {
+                head[list] = next[node];
+            }
+            if (next[node] >= 0) {
+                prev[next[node]] = prev[node];
+            } else {
+                tail[list] = prev[node];
+            }
+            owner[node] = -1;
+            size[list]--;
+        }
+    }
+
+    // Base of the list-based policies. Nodes 0 to pages - 1 are the pages; the rest are ghosts, which remember the
+    // block of a page that was evicted and are found by block number.
+    private abstract static class Listed extends ReplacementPolicy {
+        protected int pages;
+        protected Lists lists;
+        protected int[] pageBlock; // block each page holds
+        private int[] ghostBlock; // block each ghost node remembers, by node - pages
+        private BlockIndex ghosts; // block -> ghost node
+        private int[] freeGhosts;
+        private int freeCount;
+
+        // Sets up pages pages and room for maxGhosts ghosts on lists lists.
+        protected void init(int pages, int lists, int maxGhosts) {
+            this.pages = pages;
+            this.lists = new Lists(pages + maxGhosts, lists);
+            pageBlock = new int[pages];
+            ghostBlock = new int[maxGhosts];
+            ghosts = new BlockIndex(maxGhosts);
+            freeGhosts = new int[maxGhosts];
+            for (freeCount = 0; freeCount < maxGhosts; freeCount++) {
+                freeGhosts[freeCount] = pages + maxGhosts - 1 - freeCount;
+            }
+        }
+
+        // Returns the ghost node remembering blockId, or -1.
+        protected int ghostOf(int blockId) {
+            return ghosts.get(blockId);
+        }
+
+        // Remembers the block page held at the front of ghost list list; a full pool forgets the oldest of oldest.
+        protected void remember(int page, int list, int oldest) {
+            if (freeCount == 0) forget(lists.last(lists.size(oldest) > 0 ? oldest : list));
+            int ghost = freeGhosts[--freeCount];
+            ghostBlock[ghost - pages] = pageBlock[page];
+            ghosts.put(pageBlock[page], ghost);
+            lists.pushFront(list, ghost);
+        }
+
+        protected void forget(int ghost) {
+            ghosts.remove(ghostBlock[ghost - pages]);
+            lists.remove(ghost);
+            freeGhosts[freeCount++] = ghost;
+        }
+    }
+
+    private static class Lru extends Listed {
+        String getName() {
+            return LRU;
+        }
+
+        void init(int pages) {
+            init(pages, 1, 0);
+        }
+
+        void used(int page) {
+            lists.remove(page);
+            lists.pushFront(0, page);
+        }
+
+        void admitted(int page, int blockId) {
+            lists.pushFront(0, page);
+        }
+
+        int victim(int blockId) {
+            int page = lists.last(0);
+            lists.remove(page);
+            return page;
+        }
+    }
+
+    private static class TwoQ extends Listed {
+        private final static int A1IN = 0; // FIFO of blocks seen once
+        private final static int AM = 1; // LRU of blocks seen again after leaving A1in
+        private final static int A1OUT = 2; // ghosts of blocks pushed out of A1in
+        private int maxIn; // A1in pages before it gives up its own
+        private int maxOut; // ghosts remembered
+
+        String getName() {
+            return TWOQ;
+        }
+
+        // The sizes Johnson and Shasha suggest: a quarter of the cache for A1in, ghosts for half of it.
+        void init(int pages) {
+            maxIn = Math.max(1, pages / 4);
+            maxOut = Math.max(1, pages / 2);
+            init(pages, 3, maxOut);
+        }
+
+        void used(int page) {
+            if (lists.owner(page) == AM) {
+                lists.remove(page);
+                lists.pushFront(AM, page);
+            }
+        }
+
+        void admitted(int page, int blockId) {
+            pageBlock[page] = blockId;
+            int ghost = ghostOf(blockId);
+            if (ghost >= 0) { // used again after leaving A1in
+                forget(ghost);
+                lists.pushFront(AM, page);
+            } else {
+                lists.pushFront(A1IN, page);
+            }
+        }
+
+        int victim(int blockId) {
+            int page;
+            if (lists.size(A1IN) > maxIn || lists.size(AM) == 0) {
+                page = lists.last(A1IN);
+                remember(page, A1OUT, A1OUT);
+            } else {
+                page = lists.last(AM);
+            }
+            lists.remove(page);
+            return page;
+        }
+    }
+
+    private static class Arc extends Listed {
+        private final static int T1 = 0; // resident, used once
+        private final static int T2 = 1; // resident, used more than once
+        private final static int B1 = 2; // ghosts of T1
+        private final static int B2 = 3; // ghosts of T2
+        private int target; // the size T1 aims for
+        private int adaptedFor = -1; // block victim already adapted target for
+
+        String getName() {
+            return ARC;
+        }
+
+        // Resident pages and ghosts together stay within 2 * pages, and pages the Cache has out count as neither
+        void init(int pages) {
+            init(pages, 4, 2 * pages + 1);
+            target = 0;
+            adaptedFor = -1;
+        }
+
+        void used(int page) {
+            lists.remove(page);
+            lists.pushFront(T2, page);
+        }
+
+        void admitted(int page, int blockId) {
+            pageBlock[page] = blockId;
+            int ghost = ghostOf(blockId);
+            if (ghost >= 0) { // missed because the cache chose wrong: it is wanted again
+                if (adaptedFor != blockId) adapt(ghost);
+                forget(ghost);
+                lists.pushFront(T2, page);
+            } else {
+                // Keep the directory within ARC's bounds: T1 + B1 <= pages, everything <= 2 * pages
+                if (lists.size(T1) + lists.size(B1) >= pages && lists.size(B1) > 0) {
+                    forget(lists.last(B1));
+                } else if (lists.size(T1) + lists.size(T2) + lists.size(B1) + lists.size(B2) >= 2 * pages
+                           && lists.size(B2) > 0) {
+                    forget(lists.last(B2));
+                }
+                lists.pushFront(T1, page);
+            }
+            adaptedFor = -1;
+        }
+
+        int victim(int blockId) {
+            int ghost = ghostOf(blockId);
+            adapt(ghost);
+            adaptedFor = blockId;
+            boolean inB2 = ghost >= 0 && lists.owner(ghost) == B2;
+            int t1 = lists.size(T1);
+            int page;
+            if (t1 > 0 && (t1 > target || (inB2 && t1 == target)) || lists.size(T2) == 0) {
+                page = lists.last(T1);
+                remember(page, B1, B1);
+            } else {
+                page = lists.last(T2);
+                remember(page, B2, B2);
+            }
+            lists.remove(page);
+            return page;
+        }
+
+        // A hit in B1 says T1 is too small, one in B2 that T2 is; the rarer the list's ghosts, the bigger the step.
+        private void adapt(int ghost) {
+            if (ghost < 0) return;
+            int b1 = lists.size(B1);
+            int b2 = lists.size(B2);
+            if (lists.owner(ghost) == B1) {
+                target = Math.min(pages, target + Math.max(b2 / b1, 1));
+            } else {
+                target = Math.max(0, target - Math.max(b1 / b2, 1));
+            }
+        }
+    }
+
+    private static class ClockPro extends ReplacementPolicy {
+        private int pages;
+        private int[] next; // the clock, circular through every node
+        private int[] prev;
+        private int[] block; // block of each node
+        private int[] pageOf; // page of a resident node, -1 for a non-resident one
+        private boolean[] hot;
+        private boolean[] ref; // used since a hand last passed
+        private boolean[] test; // cold and in its test period
+        private int[] node; // node of each page
+        private BlockIndex nodes; // block -> node, resident or not
+        private int[] free;
+        private int freeCount;
+        private int handHot; // demotes hot pages; new nodes go in just behind it
+        private int handCold; // evicts cold pages
+        private int handTest; // ends test periods
+        private int resident; // pages on the clock; pages given out are not
+        private int hotCount;
+        private int nonResident;
+        private int coldTarget; // resident cold pages to keep
+        private int adaptedFor;
+
+        String getName() {
+            return CLOCKPRO;
+        }
+
+        void init(int pages) {
+            this.pages = pages;
+            int count = 2 * pages + 2; // resident pages, as many non-resident ones, and slack
+            next = new int[count];
+            prev = new int[count];
+            block = new int[count];
+            pageOf = new int[count];
+            hot = new boolean[count];
+            ref = new boolean[count];
+            test = new boolean[count];
+            node = new int[pages];
+            nodes = new BlockIndex(count);
+            free = new int[count];
+            for (freeCount = 0; freeCount < count; freeCount++) {
+                free[freeCount] = count - 1 - freeCount;
+            }
+            handHot = handCold = handTest = -1;
+            resident = 0;
+            hotCount = 0;
+            nonResident = 0;
+            coldTarget = 1;
+            adaptedFor = -1;
+        }
+
+        void used(int page) {
+            ref[node[page]] = true;
+        }
+
+        void admitted(int page, int blockId) {
+            int n = nodes.get(blockId);
+            if (n >= 0) { // back while on test: it has a short reuse distance, so it starts hot
+                if (adaptedFor != blockId) adaptUp();
+                drop(n);
+                nonResident--;
+                n = link(blockId, page);
+                hot[n] = true;
+                hotCount++;
+                while (hotCount > pages - coldTarget) {
+                    runHot();
+                }
+            } else {
+                n = link(blockId, page);
+                test[n] = true;
+            }
+            adaptedFor = -1;
+        }
+
+        int victim(int blockId) {
+            if (nodes.get(blockId) >= 0) {
+                adaptUp();
+                adaptedFor = blockId;
+            }
+            while (true) { // the cold hand runs until it frees a page
+                if (hotCount == resident) runHot(); // with pages out, every page left may be hot
+                int n = handCold;
+                handCold = next[n];
+                if (hot[n] || pageOf[n] < 0) continue;
+                if (ref[n]) {
+                    ref[n] = false;
+                    if (test[n]) { // used again during its test: promote
+                        test[n] = false;
+                        hot[n] = true;
+                        hotCount++;
+                        while (hotCount > pages - coldTarget) {
+                            runHot();
+                        }
+                    } else {
+                        test[n] = true; // a fresh test period, from the head of the clock
+                        unlink(n);
+                        link(n);
+                    }
+                    continue;
+                }
+                int page = pageOf[n];
+                pageOf[n] = -1;
+                resident--;
+                if (test[n]) { // stays on the clock, non-resident, until its test ends
+                    nonResident++;
+                    while (nonResident > pages) {
+                        runTest();
+                    }
+                } else {
+                    drop(n);
+                }
+                return page;
+            }
+        }
+
+        // Moves the hot hand until it demotes one hot page, ending the test periods it passes.
+        private void runHot() {
+            while (true) {
+                int n = handHot;
+                handHot = next[n];
+                if (hot[n]) {
+                    if (!ref[n]) {
+                        hot[n] = false;
+                        hotCount--;
+                        return;
+                    }
+                    ref[n] = false;
+                } else if (test[n]) {
+                    endTest(n);
+                }
+            }
+        }
+
+        // Moves the test hand until it drops one non-resident node, ending the test periods it passes.
+        private void runTest() {
+            while (true) {
+                int n = handTest;
+                handTest = next[n];
+                if (!hot[n] && test[n] && endTest(n)) return;
+            }
+        }
+
+        // Ends n's test period without a reuse, so fewer cold pages are needed. Returns true if n was dropped.
+        private boolean endTest(int n) {
+            test[n] = false;
+            coldTarget = Math.max(1, coldTarget - 1);
+            if (pageOf[n] >= 0) return false;
+            drop(n);
+            nonResident--;
+            return true;
+        }
+
+        // A non-resident page came back during its test, so more cold pages would have kept it.
+        private void adaptUp() {
+            coldTarget = Math.min(Math.max(1, pages - 1), coldTarget + 1);
+        }
+
+        // Takes a free node for blockId in page and puts it at the head of the clock.
+        private int link(int blockId, int page) {
+            int n = free[--freeCount];
+            block[n] = blockId;
+            pageOf[n] = page;
+            hot[n] = false;
+            ref[n] = false;
+            test[n] = false;
+            node[page] = n;
+            nodes.put(blockId, n);
+            resident++;
+            link(n);
+            return n;
+        }
+
+        private void link(int n) {
+            if (handHot < 0) {
+                next[n] = prev[n] = n;
+                handHot = handCold = handTest = n;
+                return;
+            }
+            int before = prev[handHot];
+            next[before] = n;
+            prev[n] = before;
+            next[n] = handHot;
+            prev[handHot] = n;
+        }
+
+        // Forgets n altogether.
+        private void drop(int n) {
+            nodes.remove(block[n]);
+            unlink(n);
+            free[freeCount++] = n;
+        }
+
+        // Takes n off the clock, moving any hand on it to the next node.
+        private void unlink(int n) {
+            if (next[n] == n) {
+                handHot = handCold = handTest = -1;
+                return;
+            }
+            if (handHot == n) handHot = next[n];
+            if (handCold == n) handCold = next[n];
+            if (handTest == n) handTest = next[n];
+            next[prev[n]] = next[n];
+            prev[next[n]] = prev[n];
+        }
+    }
+}
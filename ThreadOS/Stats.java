@@ -0,0 +1,35 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * Stats prints the disk I/O statistics the kernel has gathered (see IoStats): requests and bytes of each kind, and
+ * histograms of their queue wait, service time and seek distance, of the time threads slept waiting on the disk,
+ * and of the cache flusher's runs.
+ * Given "reset" it starts a new interval after printing, so running it before and after a job shows just that job.
+ * Usage: Stats [reset]   (from the Shell, or l Stats [reset])
+ */
+
+class Stats extends Thread {
+    private final boolean reset;
+
+    public Stats(String args[]) {
+        reset = args.length > 0 && args[0].equals("reset");
+    }
+
+    public Stats() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        String report = SysLib.stats(reset);
+        if (report == null) {
+            SysLib.cerr("Stats: no statistics\n");
+        } else {
+            SysLib.cout(report);
+        }
+        SysLib.exit();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * StripeBench measures raw disk throughput for large transfers, to show what striping the disk buys. It reads runs of
+ * consecutive blocks at random places on the disk with one vectored request each, writes every run back unchanged,
+ * and prints blocks per second for reads and writes at several run lengths. Run it once per boot with
+ * -DthreadOS.disk.stripes=1, 2, 4, ... and compare: a run spanning several stripe units is served by several disks at
+ * once, while a run inside one stripe unit gains nothing.
+ * Usage: l StripeBench [runs per length]
+ */
+
+import java.util.Random;
+
+class StripeBench extends Thread {
+    private final static int[] LENGTHS = { 8, 32, 64 }; // blocks per request
+    private final static int DEFAULTRUNS = 8;
+    private final static int DISKBLOCKS = 1000;
+
+    private final int runs;
+
+    public StripeBench(String args[]) {
+        runs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTRUNS;
+    }
+
+    public StripeBench() {
+        this(new String[0]);
+    }
+
+    public void run() {
+        SysLib.cout("disk model " + SysLib.diskmodel() + "\n");
+        Random random = new Random(430);
+        for (int length : LENGTHS) {
+            int[] blocks = new int[length];
+            byte[][] buffers = new byte[length][Disk.blockSize];
+            long readTime = 0;
+            long writeTime = 0;
+            for (int r = 0; r < runs; r++) {
+                int first = random.nextInt(DISKBLOCKS - length);
+                for (int i = 0; i < length; i++) {
+                    blocks[i] = first + i;
+                }
+                long start = System.nanoTime();
+                if (SysLib.rawreadv(blocks, buffers) < 0) {
+                    SysLib.cerr("StripeBench: read of blocks " + first + ".." + (first + length - 1) + " failed\n");
+                    SysLib.exit();
+                    return;
+                }
+                long middle = System.nanoTime();
+                SysLib.rawwritev(blocks, buffers);
+                writeTime += System.nanoTime() - middle;
+                readTime += middle - start;
+            }
+            SysLib.cout(length + " blocks per request: read " + rate(length * runs, readTime) + " blocks/s, write "
+                + rate(length * runs, writeTime) + " blocks/s\n");
+        }
+        SysLib.exit();
+    }
+
+    private static long rate(int blocks, long nanos) {
+        return blocks * 1000000000L / Math.max(1, nanos);
+    }
+}
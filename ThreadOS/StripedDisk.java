@@ -0,0 +1,167 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * StripedDisk is RAID-0: one block device made of several Disks, each its own thread with its own image file
+ * (DISK0, DISK1, ...). Logical blocks are dealt out to the disks in stripe units of a few consecutive blocks, unit 0
+ * to disk 0, unit 1 to disk 1 and so on, wrapping around. A multi-block request is split into one request per disk,
+ * all queued before any is waited on, so every disk seeks and transfers its share at the same time and a large read
+ * takes about 1/N of the time it takes on one disk. Nothing is redundant: losing one image loses the device.
+ */
+
+import java.util.Arrays;
+
+class StripedDisk implements BlockDevice {
+    private final Disk[] disks;
+    private final int stripeUnit; // consecutive blocks per disk before moving on to the next
+    private final int diskSize;
+
+    // A request split over several disks; it is served when every part is.
+    private static class Stripe extends Disk.Request {
+        private final Disk.Request[] parts;
+
+        Stripe(Disk.Request[] parts) {
+            super(0, -1, null, null, null);
+            this.parts = parts;
+        }
+
+        boolean await() {
+            boolean waited = false;
+            for (Disk.Request part : parts) {
+                waited |= part.await();
+            }
+            return waited;
+        }
+    }
+
+    // Stripes images, one per disk, in units of stripeUnit blocks, into a device of at most blocks blocks. Each image
+    // is used up to the smallest one's size, rounded down to whole stripe units.
+    StripedDisk(DiskImage[] images, int stripeUnit, int blocks) {
+        this.stripeUnit = Math.max(1, stripeUnit);
+        disks = new Disk[images.length];
+        int perDisk = Integer.MAX_VALUE;
+        for (int i = 0; i < images.length; i++) {
+            disks[i] = new Disk(images[i]);
+            perDisk = Math.min(perDisk, images[i].getBlocks());
+        }
+        perDisk -= perDisk % this.stripeUnit;
+        diskSize = Math.min(blocks, perDisk * disks.length);
+    }
+
+    public int getDiskSize() {
+        return diskSize;
+    }
+
+    // Returns the disk logical block blockId lives on.
+    private int diskOf(int blockId) {
+        return (blockId / stripeUnit) % disks.length;
+    }
+
+    // Returns where on its disk logical block blockId lives.
+    private int blockOf(int blockId) {
+        return (blockId / stripeUnit / disks.length) * stripeUnit + blockId % stripeUnit;
+    }
+
+    public Disk.Request read(int blockId, byte[] buffer) {
+        if (blockId < 0 || blockId >= diskSize) return null;
+        return disks[diskOf(blockId)].read(blockOf(blockId), buffer);
+    }
+
+    public Disk.Request write(int blockId, byte[] buffer) {
+        if (blockId < 0 || blockId >= diskSize) return null;
+        return disks[diskOf(blockId)].write(blockOf(blockId), buffer);
+    }
+
+    public Disk.Request readv(int[] blockIds, byte[][] buffers) {
+        return vector(false, blockIds, buffers);
+    }
+
+    public Disk.Request writev(int[] blockIds, byte[][] buffers) {
+        return vector(true, blockIds, buffers);
+    }
+
+    // Splits the blocks by disk and queues one vectored request on each disk that holds any of them.
+    private Disk.Request vector(boolean write, int[] blockIds, byte[][] buffers) {
+        if (blockIds.length == 0) return null;
+        int[] count = new int[disks.length];
+        for (int blockId : blockIds) {
+            if (blockId < 0 || blockId >= diskSize) return null;
+            count[diskOf(blockId)]++;
+        }
+        int[][] ids = new int[disks.length][];
+        byte[][][] bufs = new byte[disks.length][][];
+        for (int d = 0; d < disks.length; d++) {
+            ids[d] = new int[count[d]];
+            bufs[d] = new byte[count[d]][];
+        }
+        Arrays.fill(count, 0);
+        for (int i = 0; i < blockIds.length; i++) {
+            int d = diskOf(blockIds[i]);
+            ids[d][count[d]] = blockOf(blockIds[i]);
+            bufs[d][count[d]++] = buffers[i];
+        }
+
+        Disk.Request[] parts = new Disk.Request[disks.length];
+        int n = 0;
+        for (int d = 0; d < disks.length; d++) {
+            if (ids[d].length == 0) continue;
+            parts[n++] = write ? disks[d].writev(ids[d], bufs[d]) : disks[d].readv(ids[d], bufs[d]);
+        }
+        return n == 1 ? parts[0] : new Stripe(Arrays.copyOf(parts, n));
+    }
+
+    public Disk.Request sync() {
+        Disk.Request[] parts = new Disk.Request[disks.length];
+        for (int d = 0; d < disks.length; d++) {
+            parts[d] = disks[d].sync();
+        }
+        return new Stripe(parts);
+    }
+
+    // Each disk gets a scheduler of its own, since a scheduler may remember where its head was going.
+    public void setScheduler(DiskScheduler scheduler) {
+        disks[0].setScheduler(scheduler);
+        for (int d = 1; d < disks.length; d++) {
+            disks[d].setScheduler(DiskScheduler.forName(scheduler.getName()));
+        }
+    }
+
+    public DiskScheduler getScheduler() {
+        return disks[0].getScheduler();
+    }
+
+    public void setModel(DiskModel model) {
+        for (Disk disk : disks) {
+            disk.setModel(model);
+        }
+    }
+
+    public DiskModel getModel() {
+        return disks[0].getModel();
+    }
+
+    public long getSeekTracks(boolean reset) {
+        long tracks = 0;
+        for (Disk disk : disks) {
+            tracks += disk.getSeekTracks(reset);
+        }
+        return tracks;
+    }
+
+    public long getSyncBytes(boolean reset) {
+        long bytes = 0;
+        for (Disk disk : disks) {
+            bytes += disk.getSyncBytes(reset);
+        }
+        return bytes;
+    }
+
+    public void start() {
+        for (Disk disk : disks) {
+            disk.start();
+        }
+    }
+}
@@ -8,52 +8,143 @@
  * The Superblock class holds the blueprints for the entire file system. Inside, you'll find stuff like how many blocks the disk has, 
  * which blocks are set aside for special purposes, and where the list of available blocks lives.  It's the toolbox for setting up the 
  * superblock in the first place, formatting the disk, keeping any changes saved, grabbing free blocks when you need them, and putting 
- * blocks back on the "available" list.
+ * blocks back on the "available" list. Free space is a bitmap kept in memory, which lets the allocator hand out
+ * contiguous runs of blocks, or the free block nearest to a given one, without touching the disk. The bitmap is saved in
+ * dedicated blocks at the end of the disk, recorded in the superblock, whenever the disk is synced; disks from before
+ * the bitmap (free list or extents only) get their bitmap rebuilt from the inodes and placed at the first mount.
+ * The block size is chosen when the disk is formatted and recorded in the superblock; every other number here counts
+ * blocks of that size. Disks from before it was recorded have 512-byte blocks.
  */
 
 
+import java.util.Arrays;
+import java.util.BitSet;
+
 class SuperBlock {
     private final int defaulttotalInodes = 64;
+    private final static int pointerFormat = 0; // direct + indirect block pointers and an on-disk free list
+    private final static int extentFormat = 1; // extent inodes, free space derived from the inodes
+    private final static int bitmapFormat = 2; // extent inodes, free space saved in bitmap blocks
+    public int blockSize; // bytes per file system block
+    private int bitsPerBlock; // blocks one bitmap block covers
+    private final int diskSize; // # disk blocks
     public int totalBlocks;
     public int inodeBlocks;
-    public int freeList;
+    public int freeList; // first data block; every block from here on is allocatable
+    public int formatVersion;
+    public int bitmapStart; // first bitmap block
+    public int bitmapBlocks; // # bitmap blocks
+
+    private BitSet usedBlocks; // in-memory free space map, bit set = block in use
+    private final BitSet dirtyBitmap = new BitSet(); // bitmap blocks changed since the last sync
+    private int nextFree; // no block below this one is free, so getFreeBlock starts its search here
 
     // you implement
     // Initializes the superblock with the filesystem's structural information from disk or formats if invalid.
-    public SuperBlock(int diskSize) {
-        byte[] superBlock = new byte[Disk.blockSize];
-        SysLib.rawread(0, superBlock);
+    // diskSize counts disk blocks; an invalid disk is formatted with defaultBlockSize-byte blocks.
+    public SuperBlock(int diskSize, int defaultBlockSize) {
+        this.diskSize = diskSize;
+        byte[] superBlock = new byte[Disk.blockSize]; // the fields fit in the first disk block whatever the block size
+        BlockIO.setBlockSize(Disk.blockSize);
+        BlockIO.read(0, superBlock);
         totalBlocks = SysLib.bytes2int(superBlock, 0);
         inodeBlocks = SysLib.bytes2int(superBlock, 4);
         freeList = SysLib.bytes2int(superBlock, 8);
+        formatVersion = SysLib.bytes2int(superBlock, 12);
+        bitmapStart = SysLib.bytes2int(superBlock, 16);
+        bitmapBlocks = SysLib.bytes2int(superBlock, 20);
+        blockSize = SysLib.bytes2int(superBlock, 24);
+        if (blockSize == 0) blockSize = Disk.blockSize; // formatted before the block size was recorded
+        if (formatVersion == pointerFormat) {
+            // freeList was the head of a free list, past the blocks in use or -1 once the disk was full; data
+            // started right after the inodes, as the old format put it
+            freeList = 2 + inodeBlocks * Inode.iNodeSize / Disk.blockSize;
+        }
 
         // Validate the filesystem structure. If invalid, reformat with default settings
-        if (totalBlocks != diskSize || inodeBlocks <= 0 || freeList < 2) {
-            // Reinitialize variables to default and format if there's a discrepancy
-            totalBlocks = diskSize; // Update totalBlocks to match disk size
-            format(defaulttotalInodes); // Format the disk with a default number of inodes
+        if (!BlockIO.isBlockSize(blockSize) || totalBlocks != blocksOf(blockSize) || inodeBlocks <= 0 || freeList < 2
+                || formatVersion < pointerFormat || formatVersion > bitmapFormat) {
+            format(defaulttotalInodes, defaultBlockSize); // Format the disk with a default number of inodes
+            return;
+        }
+        setBlockSize(blockSize);
+
+        if (formatVersion == pointerFormat) {
+            convertPointerInodes(); // Disk written before extents were introduced
+        }
+        if (formatVersion == bitmapFormat && bitmapPlaced() && loadFreeMap()) {
+            return;
+        }
+
+        // No usable bitmap on disk: derive free space from the inodes and save it as a bitmap from now on
+        rebuildFreeMap();
+        if (formatVersion != bitmapFormat || !bitmapPlaced()) {
+            placeBitmap();
         }
+        sync();
     }
 
 
+    // Returns the number of blockSize-byte blocks on the disk; block numbers are shorts, which caps it.
+    private int blocksOf(int blockSize) {
+        return Math.min(diskSize / (blockSize / Disk.blockSize), Short.MAX_VALUE);
+    }
+
+    private void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+        bitsPerBlock = blockSize * 8;
+        BlockIO.setBlockSize(blockSize);
+    }
+
     //  helper function
-    void sync() {
-        byte[] superBlock = new byte[Disk.blockSize];
+    // Writes the superblock and the bitmap blocks that changed. Synchronized so the bitmap cannot change under it.
+    synchronized void sync() {
+        byte[] superBlock = new byte[blockSize];
         SysLib.int2bytes(totalBlocks, superBlock, 0);
         SysLib.int2bytes(inodeBlocks, superBlock, 4);
         SysLib.int2bytes(freeList, superBlock, 8);
-        SysLib.rawwrite(0, superBlock);
+        SysLib.int2bytes(formatVersion, superBlock, 12);
+        SysLib.int2bytes(bitmapStart, superBlock, 16);
+        SysLib.int2bytes(bitmapBlocks, superBlock, 20);
+        SysLib.int2bytes(blockSize, superBlock, 24);
+        BlockIO.write(0, superBlock);
+        if (formatVersion == bitmapFormat) {
+            syncFreeMap();
+        }
         SysLib.cerr("Superblock synchronized\n");
     }
 
+    // Writes the bitmap blocks whose bits changed since the last sync.
+    synchronized void syncFreeMap() {
+        if (formatVersion != bitmapFormat) return; // disk full at migration; free space is rebuilt at every mount
+        byte[] bitmap = new byte[blockSize];
+        for (int i = dirtyBitmap.nextSetBit(0); i >= 0 && i < bitmapBlocks; i = dirtyBitmap.nextSetBit(i + 1)) {
+            Arrays.fill(bitmap, (byte) 0);
+            int base = i * bitsPerBlock;
+            int end = Math.min(base + bitsPerBlock, totalBlocks);
+            for (int block = usedBlocks.nextSetBit(base); block >= 0 && block < end; block = usedBlocks.nextSetBit(block + 1)) {
+                bitmap[(block - base) / 8] |= (byte) (1 << ((block - base) % 8));
+            }
+            BlockIO.write(bitmapStart + i, bitmap);
+        }
+        dirtyBitmap.clear();
+    }
+
     void format() {
         // default format with 64 inodes
         format(defaulttotalInodes);
     }
 
-    // you implement
-    // Formats the disk with a specified number of files, initializing inodes and setting up the free list.
     void format(int files) {
+        format(files, blockSize);
+    }
+
+    // you implement
+    // Formats the disk with a specified number of files and blockSize-byte blocks, initializing inodes and the free
+    // space map.
+    void format(int files, int blockSize) {
+        setBlockSize(blockSize);
+        totalBlocks = blocksOf(blockSize);
         // Set the number of inodes based on the number of files
         inodeBlocks = files;
         // Initialize each inode and save it to disk
@@ -63,41 +154,250 @@ class SuperBlock {
             inode.toDisk((short) i); // Write inode to disk
         }
 
-        // Calculate the starting index of the free list
-        freeList = 2 + inodeBlocks * 32 / Disk.blockSize; // Assuming each inode takes 32 bytes
-        // Initialize the free block list on disk
-        for (int i = freeList; i < totalBlocks; i++) {
-            byte[] block = new byte[Disk.blockSize]; // Create a block-sized byte array
-            // Point each block to the next, or mark the end with -1
-            SysLib.int2bytes(i + 1 < totalBlocks ? i + 1 : -1, block, 0);
-            SysLib.rawwrite(i, block); // Write the block to disk
-        }
-        sync(); // Save the updated superblock to disk
+        // Calculate the first data block
+        freeList = 2 + inodeBlocks * 32 / blockSize; // Assuming each inode takes 32 bytes
+        formatVersion = bitmapFormat;
+        // Every data block starts out free; no inode refers to any of them yet.
+        // The bitmap goes at the end of the disk so data blocks still start right after the inodes
+        bitmapBlocks = (totalBlocks + bitsPerBlock - 1) / bitsPerBlock;
+        bitmapStart = totalBlocks - bitmapBlocks;
+        usedBlocks = new BitSet(totalBlocks);
+        usedBlocks.set(0, freeList);
+        usedBlocks.set(bitmapStart, totalBlocks);
+        nextFree = freeList;
+        dirtyBitmap.set(0, bitmapBlocks); // A new map: every bitmap block is written
+        sync(); // Save the updated superblock and the bitmap to disk
     }
     //implement
-    // Retrieves and removes the first free block from the free list, updating the free list.
-    public int getFreeBlock() {
-        if (freeList == -1) {
+    // Retrieves the lowest-numbered free block and marks it used. Returns -1 if the disk is full.
+    public synchronized int getFreeBlock() {
+        int block = usedBlocks.nextClearBit(Math.max(nextFree, freeList));
+        if (block >= totalBlocks) {
+            nextFree = totalBlocks;
             return -1;
         }
-        int block = freeList;
-        byte[] buffer = new byte[Disk.blockSize];
-        SysLib.rawread(block, buffer); // Read the block from disk
-        freeList = SysLib.bytes2int(buffer, 0); // Update the free list to the next block
+        use(block, block + 1);
+        nextFree = block + 1;
         return block; // Return the block number of the retrieved free block
     }
 
+    // Returns the free block closest to block, looking both ways, or -1 if the disk is full. Nothing is allocated.
+    public synchronized int nearestFree(int block) {
+        if (block < freeList) block = freeList;
+        if (block >= totalBlocks) block = totalBlocks - 1;
+        int after = usedBlocks.nextClearBit(block);
+        int before = usedBlocks.previousClearBit(block);
+        if (before < freeList) before = -1;
+        if (after >= totalBlocks) return before;
+        if (before == -1 || after - block <= block - before) return after;
+        return before;
+    }
+
+    // Allocates the free block closest to block. Returns -1 if the disk is full.
+    public synchronized int getFreeBlockNear(int block) {
+        int free = nearestFree(block);
+        if (free >= 0) {
+            use(free, free + 1);
+        }
+        return free;
+    }
+
+    // Allocates up to want contiguous blocks, looking first at goal and then onward (wrapping around).
+    // The first free run long enough wins; otherwise the longest run seen is handed out.
+    // Returns {start, count}, or null if the disk is full.
+    public synchronized int[] getFreeExtent(int goal, int want) {
+        if (goal < freeList || goal >= totalBlocks) goal = Math.min(Math.max(nextFree, freeList), totalBlocks - 1);
+
+        int bestStart = -1;
+        int bestCount = 0;
+        int[][] ranges = { { goal, totalBlocks }, { freeList, goal } }; // scan from goal, then wrap around
+        for (int[] range : ranges) {
+            int block = range[0];
+            while (block < range[1]) {
+                int start = usedBlocks.nextClearBit(block);
+                if (start >= range[1]) break;
+                int end = usedBlocks.nextSetBit(start);
+                if (end < 0 || end > range[1]) end = range[1];
+                int count = end - start;
+                if (count >= want) { // first run that fits
+                    use(start, start + want);
+                    return new int[] { start, want };
+                }
+                if (count > bestCount) {
+                    bestStart = start;
+                    bestCount = count;
+                }
+                block = end;
+            }
+        }
+
+        if (bestStart == -1) {
+            return null;
+        }
+        use(bestStart, bestStart + bestCount);
+        return new int[] { bestStart, bestCount };
+    }
+
     //implement
-    // Adds a block back to the free list, marking it as available for use.
+    // Returns the number of blocks still free to allocate.
+    public synchronized int freeBlockCount() {
+        return totalBlocks - usedBlocks.cardinality();
+    }
+
+    // Marks a block free again, making it available for use.
     public boolean returnBlock(int blockNumber) {
-        if (blockNumber < 0) {
+        return returnExtent(blockNumber, 1);
+    }
+
+    // Marks count blocks starting at startBlock free again.
+    public synchronized boolean returnExtent(int startBlock, int count) {
+        if (startBlock < freeList || count <= 0 || startBlock + count > totalBlocks) {
             return false; // Invalid block numbers cannot be returned
         }
-        byte[] buffer = new byte[Disk.blockSize];
-        SysLib.int2bytes(freeList, buffer, 0); // Write the current head of the free list into the buffer
-        SysLib.rawwrite(blockNumber, buffer); // Write the buffer to the block, effectively adding it to the free list
-        freeList = blockNumber; // Update the head of the free list to this block
+        usedBlocks.clear(startBlock, startBlock + count);
+        dirtyBitmap.set(startBlock / bitsPerBlock, (startBlock + count - 1) / bitsPerBlock + 1);
+        nextFree = Math.min(nextFree, startBlock);
         return true;
     }
 
+    // Marks blocks start up to end in use and remembers which bitmap blocks that changed.
+    private void use(int start, int end) {
+        usedBlocks.set(start, end);
+        dirtyBitmap.set(start / bitsPerBlock, (end - 1) / bitsPerBlock + 1);
+    }
+
+    // Returns true if the superblock records a bitmap location that fits this disk.
+    private boolean bitmapPlaced() {
+        return bitmapBlocks == (totalBlocks + bitsPerBlock - 1) / bitsPerBlock
+                && bitmapStart >= freeList && bitmapStart + bitmapBlocks <= totalBlocks;
+    }
+
+    // Reads the free space map from the bitmap blocks. Returns false if it cannot be right, e.g. it leaves the
+    // superblock, the inodes or the bitmap itself free, in which case the caller rebuilds it from the inodes.
+    private boolean loadFreeMap() {
+        usedBlocks = new BitSet(totalBlocks);
+        byte[] bitmap = new byte[blockSize];
+        for (int i = 0; i < bitmapBlocks; i++) {
+            BlockIO.read(bitmapStart + i, bitmap);
+            int base = i * bitsPerBlock;
+            for (int bit = 0; bit < bitsPerBlock && base + bit < totalBlocks; bit++) {
+                if ((bitmap[bit / 8] & (1 << (bit % 8))) != 0) {
+                    usedBlocks.set(base + bit);
+                }
+            }
+        }
+        nextFree = freeList;
+        dirtyBitmap.clear();
+        return usedBlocks.nextClearBit(0) >= freeList
+                && usedBlocks.nextClearBit(bitmapStart) >= bitmapStart + bitmapBlocks;
+    }
+
+    // Finds room for the bitmap on a disk formatted before it existed, preferring the end of the disk like format does.
+    // If no run is free the disk keeps its old format and free space is rebuilt at every mount.
+    private void placeBitmap() {
+        bitmapBlocks = (totalBlocks + bitsPerBlock - 1) / bitsPerBlock;
+        int[] extent = getFreeExtent(totalBlocks - bitmapBlocks, bitmapBlocks);
+        if (extent == null || extent[1] < bitmapBlocks) {
+            if (extent != null) returnExtent(extent[0], extent[1]);
+            formatVersion = extentFormat;
+            bitmapStart = 0;
+            bitmapBlocks = 0;
+            return;
+        }
+        bitmapStart = extent[0];
+        formatVersion = bitmapFormat;
+        SysLib.cerr("threadOS: free space bitmap placed at block " + bitmapStart + "\n");
+    }
+
+    // Rebuilds the free space map from the extents and extent blocks every inode refers to.
+    private void rebuildFreeMap() {
+        usedBlocks = new BitSet(totalBlocks);
+        usedBlocks.set(0, freeList); // superblock and inode blocks
+        if (formatVersion == bitmapFormat && bitmapPlaced()) {
+            usedBlocks.set(bitmapStart, bitmapStart + bitmapBlocks);
+        }
+        nextFree = freeList;
+        for (short i = 0; i < inodeBlocks; i++) {
+            Inode inode = new Inode(i);
+            short[] extents = inode.getExtents();
+            for (int e = 0; e < extents.length; e += 2) {
+                usedBlocks.set(extents[e], Math.min(extents[e] + extents[e + 1], totalBlocks));
+            }
+            if (inode.extentBlock >= 0) {
+                usedBlocks.set(inode.extentBlock);
+            }
+        }
+        dirtyBitmap.set(0, (totalBlocks + bitsPerBlock - 1) / bitsPerBlock); // None of it is on disk yet
+    }
+
+    // Rewrites inodes from the old direct/indirect pointer layout as extents, coalescing adjacent blocks.
+    // The old indirect block is reused as the extent block when a file needs one. Such disks have 512-byte blocks.
+    private void convertPointerInodes() {
+        final int directSize = 11; // # direct pointers in the old layout
+        byte[] inodeData = new byte[Disk.blockSize];
+        byte[] indirectData = new byte[Disk.blockSize];
+
+        // First pass: collect every block the old inodes use, so extent blocks can be found for files that need one
+        BitSet used = new BitSet(totalBlocks);
+        used.set(0, freeList);
+        short[][] fileBlocks = new short[inodeBlocks][];
+        short[] indirects = new short[inodeBlocks];
+        for (int i = 0; i < inodeBlocks; i++) {
+            BlockIO.read(1 + i / 16, inodeData);
+            int offset = (i % 16) * Inode.iNodeSize + 8; // skip length, count and flag
+            short[] blocks = new short[directSize + Disk.blockSize / 2];
+            int n = 0;
+            for (int d = 0; d < directSize; d++, offset += 2) {
+                short block = SysLib.bytes2short(inodeData, offset);
+                if (block >= freeList && block < totalBlocks) blocks[n++] = block;
+            }
+            indirects[i] = SysLib.bytes2short(inodeData, offset);
+            if (indirects[i] >= freeList && indirects[i] < totalBlocks) {
+                used.set(indirects[i]);
+                BlockIO.read(indirects[i], indirectData);
+                for (int p = 0; p < Disk.blockSize / 2; p++) {
+                    short block = SysLib.bytes2short(indirectData, p * 2);
+                    if (block < freeList || block >= totalBlocks) break;
+                    blocks[n++] = block;
+                }
+            } else {
+                indirects[i] = -1;
+            }
+            fileBlocks[i] = Arrays.copyOf(blocks, n);
+            for (int b = 0; b < n; b++) used.set(fileBlocks[i][b]);
+        }
+
+        // Second pass: rewrite each inode with its blocks as extents
+        for (short i = 0; i < inodeBlocks; i++) {
+            BlockIO.read(1 + i / 16, inodeData);
+            int offset = (i % 16) * Inode.iNodeSize;
+            Inode inode = new Inode();
+            inode.length = SysLib.bytes2int(inodeData, offset);
+            inode.count = SysLib.bytes2short(inodeData, offset + 4);
+            inode.flag = SysLib.bytes2short(inodeData, offset + 6);
+            short[] blocks = fileBlocks[i];
+            for (int b = 0; b < blocks.length; ) {
+                int run = 1;
+                while (b + run < blocks.length && blocks[b + run] == blocks[b] + run) run++;
+                if (inode.needsExtentBlock(blocks[b])) {
+                    short extentBlock = indirects[i];
+                    if (extentBlock < 0) { // small file without an indirect block to reuse
+                        extentBlock = (short) used.nextClearBit(freeList);
+                        if (extentBlock >= totalBlocks) break;
+                        used.set(extentBlock);
+                    }
+                    indirects[i] = -1; // now in use as the extent block
+                    inode.setExtentBlock(extentBlock);
+                }
+                if (!inode.registerExtent(blocks[b], run)) break;
+                b += run;
+            }
+            inode.toDisk(i);
+        }
+
+        formatVersion = extentFormat;
+        sync();
+        SysLib.cerr("threadOS: converted " + inodeBlocks + " inodes to extents\n");
+    }
+
 }
\ No newline at end of file
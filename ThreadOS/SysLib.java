@@ -0,0 +1,322 @@
+import java.util.*;
+import java.nio.ByteBuffer;
+
+public class SysLib {
+    public static int exec( String args[] ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.EXEC, 0, args );
+    }
+
+    public static int join( ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.WAIT, 0, null );
+    }
+
+    public static int boot( ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.BOOT, 0, null );
+    }
+
+    public static int exit( ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.EXIT, 0, null );
+    }
+
+    public static int sleep( int milliseconds ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.SLEEP, milliseconds, null );
+    }
+
+    public static int disk( ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_DISK,
+                                 0, 0, null );
+    }
+
+    // raised by the disk when it has served request
+    public static int disk( Disk.Request request ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_DISK,
+                                 0, 0, request );
+    }
+
+    public static int cin( StringBuffer s ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.READ, 0, s );
+    }
+
+    public static int cout( String s ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.WRITE, 1, s );
+    }
+
+    public static int cerr( String s ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.WRITE, 2, s );
+    }
+
+    public static int rawread( int blkNumber, byte[] b ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.RAWREAD, blkNumber, b );
+    }
+
+    public static int rawwrite( int blkNumber, byte[] b ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.RAWWRITE, blkNumber, b );
+    }
+
+    // reads or writes blkNumbers.length blocks, b[i] holding blkNumbers[i],
+    // as one disk request served in block order
+    public static int rawreadv( int blkNumbers[], byte[][] b ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.RAWREADV, blkNumbers.length,
+                                 new Object[] { blkNumbers, b } );
+    }
+
+    public static int rawwritev( int blkNumbers[], byte[][] b ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.RAWWRITEV, blkNumbers.length,
+                                 new Object[] { blkNumbers, b } );
+    }
+
+    public static int sync( ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.SYNC, 0, null );
+    }
+
+    public static int cread( int blkNumber, byte[] b ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.CREAD, blkNumber, b );
+    }
+
+    public static int cwrite( int blkNumber, byte[] b ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.CWRITE, blkNumber, b );
+    }
+
+    // reads several blocks through the cache; the misses go to the disk
+    // together as one vectored request
+    public static int creadv( int blkNumbers[], byte[][] b ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.CREADV, blkNumbers.length,
+                                 new Object[] { blkNumbers, b } );
+    }
+
+    // copies a byte range spread over several blocks between the cache's
+    // frames and range.buffer without staging whole blocks
+    public static int creadrange( BlockRange range ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.CREADRANGE, range.count, range );
+    }
+
+    public static int cwriterange( BlockRange range ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.CWRITERANGE, range.count, range );
+    }
+
+    // reads blocks into the cache ahead of a sequential reader; returns
+    // how many had to come from the disk
+    public static int cprefetch( int blkNumbers[] ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.CPREFETCH, blkNumbers.length,
+                                 blkNumbers );
+    }
+
+    public static int flush( ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.CFLUSH, 0, null );
+    }
+
+    public static int csync( ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.CSYNC, 0, null );
+    }
+
+    // counts[0] = raw block reads, counts[1] = raw block writes and, if
+    // there is room, counts[2] = tracks the disk head crossed since the
+    // last reset, counts[3] = disk requests (a vectored request counts
+    // once), counts[4..6] = blocks read ahead, read-ahead hits and
+    // read-ahead waste, counts[7] = bytes syncs wrote to the DISK file,
+    // counts[8] = blocks read or written through the cache, counts[9]
+    // = how many of those missed, counts[10] = dirty pages written back
+    // on eviction and counts[11] = dirty pages the flusher wrote back;
+    // reset = true clears the counters after reading them
+    public static int iostat( int[] counts, boolean reset ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.IOSTAT, reset ? 1 : 0, counts );
+    }
+
+    // switches the order the disk serves queued requests in to policy
+    // ("fcfs", "sstf", "scan" or "clook"; "" keeps the current one) and
+    // returns the policy now in use, or null if there is no such policy
+    public static String disksched( String policy ) {
+        StringBuffer name = new StringBuffer( policy );
+        if ( Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                               Kernel.DISKSCHED, 0, name ) != Kernel.OK )
+            return null;
+        return name.toString( );
+    }
+
+    // returns the latency model the disk was booted with, e.g. "hdd: 20 ms
+    // per block + 1 ms per track, 1 request at a time"
+    public static String diskmodel( ) {
+        StringBuffer model = new StringBuffer( );
+        if ( Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                               Kernel.DISKMODEL, 0, model ) != Kernel.OK )
+            return null;
+        return model.toString( );
+    }
+
+    // hands the operations prepared on ring to the kernel, which serves
+    // them in the background; returns how many were submitted
+    public static int iosubmit( IoRing ring ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.IOENTER, 0, ring );
+    }
+
+    // submits what is prepared on ring, like iosubmit, then sleeps until
+    // at least min completions can be reaped, or until nothing is left in
+    // flight; returns how many completions are waiting
+    public static int iowait( IoRing ring, int min ) {
+        if ( Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                               Kernel.IOENTER, min, ring ) < 0 )
+            return Kernel.ERROR;
+        return ring.ready( );
+    }
+
+    // keeps the data of the file open at fd compressed from now on (see
+    // ChunkMap); only an empty file can be switched
+    public static int compress( int fd ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.COMPRESS, fd, null );
+    }
+
+    // gives the cache pages pages, writing back and dropping the blocks of
+    // any it gives up, unless pages is 0; returns its size in pages
+    public static int cachesize( int pages ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.CACHESIZE, pages, null );
+    }
+
+    // returns the disk request counts, bytes and latency histograms so far
+    // (see IoStats), and starts counting afresh if reset is true
+    public static String stats( boolean reset ) {
+        StringBuffer report = new StringBuffer( );
+        if ( Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                               Kernel.STATS, reset ? 1 : 0, report ) != Kernel.OK )
+            return null;
+        return report.toString( );
+    }
+
+    public static String[] stringToArgs( String s ) {
+        StringTokenizer token = new StringTokenizer( s," " );
+        String[] progArgs = new String[ token.countTokens( ) ];
+        for ( int i = 0; token.hasMoreTokens( ); i++ ) {
+            progArgs[i] = token.nextToken( );
+        }
+        return progArgs;
+    }
+
+    public static void short2bytes( short s, byte[] b, int offset ) {
+        b[offset] = (byte)( s >> 8 );
+        b[offset + 1] = (byte)s;
+    }
+
+    public static short bytes2short( byte[] b, int offset ) {
+        short s = 0;
+        s += b[offset] & 0xff;
+        s <<= 8;
+        s += b[offset + 1] & 0xff;
+        return s;
+    }
+
+    public static void int2bytes( int i, byte[] b, int offset ) {
+        b[offset] = (byte)( i >> 24 );
+        b[offset + 1] = (byte)( i >> 16 );
+        b[offset + 2] = (byte)( i >> 8 );
+        b[offset + 3] = (byte)i;
+    }
+
+    public static int bytes2int( byte[] b, int offset ) {
+        int n = ((b[offset] & 0xff) << 24) + ((b[offset+1] & 0xff) << 16) +
+                ((b[offset+2] & 0xff) << 8) + (b[offset+3] & 0xff);
+        return n;
+    }
+
+    public static int format( int files ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.FORMAT, files, null );
+    }
+
+    // formats the disk with blockSize-byte file system blocks, a power of two
+    // from 512 to 8192
+    public static int format( int files, int blockSize ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.FORMAT, files, blockSize );
+    }
+
+    public static int open( String fileName, String mode ) {
+        String[] args = new String[2];
+        args[0] = fileName;
+        args[1] = mode;
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.OPEN, 0, args );
+    }
+
+    public static int close( int fd ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.CLOSE, fd, null );
+    }
+
+    public static int read( int fd, byte buffer[] ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.READ, fd, buffer );
+    }
+
+    public static int write( int fd, byte buffer[] ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.WRITE, fd, buffer );
+    }
+
+    public static int seek( int fd, int offset, int whence ) {
+        int[] args = new int[2];
+        args[0] = offset;
+        args[1] = whence;
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.SEEK, fd, args );
+    }
+
+    public static int fsize( int fd ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.SIZE, fd, null );
+    }
+
+    // copies length bytes of the open file fd, from offset on, into memory;
+    // returns a view of them, or null on error. changes to a view of a
+    // "w+" file reach the file on msync, munmap or close, and the view
+    // sees other writes to the file only at msync.
+    public static ByteBuffer mmap( int fd, int offset, int length ) {
+        Object[] call = { new int[] { offset, length }, null };
+        if ( Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                               Kernel.MMAP, fd, call ) != Kernel.OK )
+            return null;
+        return (ByteBuffer)call[1];
+    }
+
+    // writes back the blocks of an mmap'ed view that changed; returns the
+    // bytes written back, or -1 if view did not come from mmap
+    public static int msync( ByteBuffer view ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.MSYNC, 0, view );
+    }
+
+    // writes back an mmap'ed view like msync and ends the mapping; returns
+    // the bytes written back, or -1 if view is not mapped
+    public static int munmap( ByteBuffer view ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.MUNMAP, 0, view );
+    }
+
+    public static int delete( String fileName ) {
+        return Kernel.interrupt( Kernel.INTERRUPT_SOFTWARE,
+                                 Kernel.DELETE, 0, fileName );
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Names (Group C): Nour Ali, Ibrahim Deria
+ * Professor: Erika Parsons
+ * Class: CSS430
+ * Assignment: Final Project - File System
+ * Description:
+ *
+ * The WriteBehind class is the timer half of write-behind. While write-behind is on, written data waits in memory
+ * until its file is closed or synced; this background thread makes sure data from a file that stays open does not
+ * wait forever, flushing every file whose oldest held block is older than FileSystem.FLUSH_AGE.
+ */
+
+class WriteBehind extends Thread {
+    private final FileSystem fileSystem;
+
+    WriteBehind(FileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+        setDaemon(true); // never keeps ThreadOS from shutting down
+    }
+
+    public void run() {
+        while (true) {
+            try {
+                Thread.sleep(FileSystem.FLUSH_AGE / 2); // data waits between FLUSH_AGE and 1.5 * FLUSH_AGE
+            } catch (InterruptedException e) {
+                return;
+            }
+            fileSystem.flushDirty(FileSystem.FLUSH_AGE);
+        }
+    }
+}